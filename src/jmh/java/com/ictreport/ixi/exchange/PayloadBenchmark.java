@@ -0,0 +1,97 @@
+package com.ictreport.ixi.exchange;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.typeadapters.RuntimeTypeAdapterFactory;
+import com.ictreport.ixi.utils.Constants;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the shared payload codec with the previous code path, which built a new
+ * RuntimeTypeAdapterFactory and Gson instance for every serialize/deserialize call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadBenchmark {
+
+    private StatusPayload statusPayload;
+    private String statusJson;
+    private MetadataPayload metadataPayload;
+    private String metadataJson;
+
+    @Setup
+    public void setup() {
+        final List<NeighborPayload> neighbors = new ArrayList<>();
+        neighbors.add(new NeighborPayload(1546300800000L, "abc", 10, 20, 30, 40, 50));
+        neighbors.add(new NeighborPayload(1546300800000L, "def", 11, 21, 31, 41, 51));
+        neighbors.add(new NeighborPayload(1546300800000L, "ghi", 12, 22, 32, 42, 52));
+
+        statusPayload = new StatusPayload("xyz", "ict (ict-1)", "0.5", Constants.VERSION, 60000, neighbors, 43);
+        statusJson = Payload.serialize(statusPayload);
+        metadataPayload = new MetadataPayload("xyz", Constants.VERSION);
+        metadataJson = Payload.serialize(metadataPayload);
+    }
+
+    @Benchmark
+    public String serializeStatusShared() {
+        return Payload.serialize(statusPayload);
+    }
+
+    @Benchmark
+    public String serializeStatusLegacy() {
+        return legacyGson().toJson(statusPayload, Payload.class);
+    }
+
+    @Benchmark
+    public Payload deserializeStatusShared() {
+        return Payload.deserialize(statusJson);
+    }
+
+    @Benchmark
+    public Payload deserializeStatusLegacy() {
+        return legacyGson().fromJson(statusJson, Payload.class);
+    }
+
+    @Benchmark
+    public String serializeMetadataShared() {
+        return Payload.serialize(metadataPayload);
+    }
+
+    @Benchmark
+    public String serializeMetadataLegacy() {
+        return legacyGson().toJson(metadataPayload, Payload.class);
+    }
+
+    @Benchmark
+    public Payload deserializeMetadataShared() {
+        return Payload.deserialize(metadataJson);
+    }
+
+    @Benchmark
+    public Payload deserializeMetadataLegacy() {
+        return legacyGson().fromJson(metadataJson, Payload.class);
+    }
+
+    private static Gson legacyGson() {
+        final RuntimeTypeAdapterFactory<Payload> runtimeTypeAdapterFactory = RuntimeTypeAdapterFactory
+                .of(Payload.class, "type")
+                .registerSubtype(MetadataPayload.class, "MetadataPayload")
+                .registerSubtype(PingPayload.class, "PingPayload")
+                .registerSubtype(StatusPayload.class, "StatusPayload")
+                .registerSubtype(ReceivedPingPayload.class, "ReceivedPingPayload")
+                .registerSubtype(SubmittedPingPayload.class, "SubmittedPingPayload")
+                .registerSubtype(RequestUuidPayload.class, "RequestUuidPayload")
+                .registerSubtype(UuidPayload.class, "UuidPayload")
+                .registerSubtype(NeighborPayload.class, "NeighborPayload");
+
+        return new GsonBuilder().registerTypeAdapterFactory(runtimeTypeAdapterFactory).create();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ictreport.ixi.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a sync call through the pooled keep-alive client with the previous code path, which
+ * created a new client per call and never closed it or the response. Both run against a local stub
+ * of the Ict REST API. The open file descriptor count is printed after every iteration (Linux only).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IctRestCallerBenchmark {
+
+    private static final String PASSWORD = "change_me_now";
+    private static final byte[] INFO = "{\"version\":\"0.5\",\"default_config\":{}}".getBytes(StandardCharsets.UTF_8);
+    private HttpServer server;
+    private int port;
+
+    @Setup
+    public void setup() throws IOException {
+        // The stub writes headers and body separately, with Nagle's algorithm every keep-alive
+        // response would wait for a delayed ACK.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/getInfo", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try (InputStream request = exchange.getRequestBody()) {
+                    while (request.read() != -1) {
+                        // Drain the request so the connection can be kept alive
+                    }
+                }
+                exchange.sendResponseHeaders(200, INFO.length);
+                try (OutputStream response = exchange.getResponseBody()) {
+                    response.write(INFO);
+                }
+            }
+        });
+        server.start();
+        port = server.getAddress().getPort();
+    }
+
+    @TearDown
+    public void tearDown() {
+        IctRestCaller.shutDown();
+        server.stop(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printFileDescriptors() {
+        final String[] fileDescriptors = new File("/proc/self/fd").list();
+        if (fileDescriptors != null) {
+            System.out.println("Open file descriptors: " + fileDescriptors.length);
+        }
+    }
+
+    @Benchmark
+    public Object getInfoPooled() {
+        return IctRestCaller.getInfo(port, PASSWORD);
+    }
+
+    @Benchmark
+    public Object getInfoLegacy() throws IOException {
+        final CloseableHttpClient httpclient = HttpClients.createDefault();
+        final HttpPost httppost = new HttpPost("http://localhost:" + port + "/getInfo");
+        final List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("password", PASSWORD));
+        httppost.setEntity(new UrlEncodedFormEntity(params, "UTF-8"));
+
+        final CloseableHttpResponse response = httpclient.execute(httppost);
+        final HttpEntity entity = response.getEntity();
+        return EntityUtils.toString(entity, "UTF-8");
+    }
+}
@@ -0,0 +1,63 @@
+package com.ictreport.ixi.utils;
+
+import com.ictreport.ixi.model.AddressAndStats;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming parse of a /getNeighbors response with the previous org.json document,
+ * for neighbors with long stats histories. Run with the gc profiler to compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NeighborsParseBenchmark {
+
+    @Param({"10", "1000"})
+    public int history;
+
+    private String json;
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder("{\"neighbors\":[");
+        for (int neighbor = 0; neighbor < 8; neighbor++) {
+            if (neighbor > 0) builder.append(',');
+            builder.append("{\"address\":\"node-").append(neighbor).append("/10.0.0.").append(neighbor)
+                    .append(":1337\",\"stats\":[");
+            for (int i = 0; i < history; i++) {
+                if (i > 0) builder.append(',');
+                builder.append("{\"timestamp\":").append(1546300800000L + i * 60000L)
+                        .append(",\"all\":").append(i).append(",\"new\":").append(i)
+                        .append(",\"ignored\":0,\"invalid\":0,\"requested\":").append(i).append('}');
+            }
+            builder.append("]}");
+        }
+        json = builder.append("]}").toString();
+    }
+
+    @Benchmark
+    public List<AddressAndStats> parseStreaming() throws IOException {
+        return IctRestCaller.parseNeighbors(new StringReader(json));
+    }
+
+    @Benchmark
+    public JSONObject parseDocument() {
+        final JSONArray neighbors = new JSONObject(json).getJSONArray("neighbors");
+        JSONObject latest = null;
+        for (int i = 0; i < neighbors.length(); i++) {
+            final JSONArray stats = neighbors.getJSONObject(i).getJSONArray("stats");
+            latest = stats.getJSONObject(stats.length() - 1);
+        }
+        return latest;
+    }
+}
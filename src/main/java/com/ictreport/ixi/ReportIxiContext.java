@@ -28,6 +28,8 @@ public class ReportIxiContext extends ConfigurableIxiContext {
     private static final String           REPORT_PORT                  = "Report.ixi Port";
     private static final String           EXTERNAL_REPORT_PORT         = "External Report.ixi Port";
     private static final String           NAME                         = "Name";
+    private static final String           RECEIVER_WORKERS             = "Receiver Workers";
+    private static final String           RECEIVE_SOCKETS              = "Receive Sockets";
     private static final String           NEIGHBORS                    = "Neighbors";
     private static final String           NEIGHBOR_ADDRESS             = "_address";
     private static final String           NEIGHBOR_REPORT_PORT         = "reportPort";
@@ -42,6 +44,8 @@ public class ReportIxiContext extends ConfigurableIxiContext {
     private static final int              DEFAULT_REPORT_PORT          = 1338;
     private static final Integer          DEFAULT_EXTERNAL_REPORT_PORT = null;
     private static final String           DEFAULT_NAME                 = "YOUR_NAME (ict-0)";
+    private static final Integer          DEFAULT_RECEIVER_WORKERS     = null;
+    private static final Integer          DEFAULT_RECEIVE_SOCKETS      = null;
     private static final JSONArray        DEFAULT_NEIGHBORS            = new JSONArray();
 
     // Context properties
@@ -53,6 +57,8 @@ public class ReportIxiContext extends ConfigurableIxiContext {
     private int                           reportPort                   = DEFAULT_REPORT_PORT;
     private Integer                       externalReportPort           = DEFAULT_EXTERNAL_REPORT_PORT;
     private String                        name                         = DEFAULT_NAME;
+    private Integer                       receiverWorkers              = DEFAULT_RECEIVER_WORKERS;
+    private Integer                       receiveSockets               = DEFAULT_RECEIVE_SOCKETS;
 
     static {
         DEFAULT_CONFIGURATION.put(ICT_REST_PORT, DEFAULT_ICT_REST_PORT);
@@ -61,6 +67,8 @@ public class ReportIxiContext extends ConfigurableIxiContext {
         DEFAULT_CONFIGURATION.put(REPORT_PORT, DEFAULT_REPORT_PORT);
         DEFAULT_CONFIGURATION.put(EXTERNAL_REPORT_PORT, DEFAULT_EXTERNAL_REPORT_PORT);
         DEFAULT_CONFIGURATION.put(NAME, DEFAULT_NAME);
+        DEFAULT_CONFIGURATION.put(RECEIVER_WORKERS, DEFAULT_RECEIVER_WORKERS);
+        DEFAULT_CONFIGURATION.put(RECEIVE_SOCKETS, DEFAULT_RECEIVE_SOCKETS);
         DEFAULT_CONFIGURATION.put(NEIGHBORS, DEFAULT_NEIGHBORS.toString());
     }
 
@@ -74,7 +82,8 @@ public class ReportIxiContext extends ConfigurableIxiContext {
     @Override
     public JSONObject getConfiguration() {
 
-        reportIxi.syncIctNeighbors();
+        // Rendered from the last synced neighbors, never waits for the Ict REST API
+        reportIxi.refreshIctNeighbors();
 
         final List<JSONObject> jsonNeighbor = new LinkedList<>();
         for (Neighbor neighbor : reportIxi.getNeighbors()) {
@@ -99,6 +108,12 @@ public class ReportIxiContext extends ConfigurableIxiContext {
         if (getExternalReportPort() != -1) {
             configuration.put(EXTERNAL_REPORT_PORT, getExternalReportPort());
         }
+        if (receiverWorkers != null) {
+            configuration.put(RECEIVER_WORKERS, getReceiverWorkers());
+        }
+        if (receiveSockets != null) {
+            configuration.put(RECEIVE_SOCKETS, getReceiveSockets());
+        }
 
         return configuration;
     }
@@ -108,6 +123,8 @@ public class ReportIxiContext extends ConfigurableIxiContext {
 
         validateReportPort(newConfiguration);
         validateName(newConfiguration);
+        validateReceiverWorkers(newConfiguration);
+        validateReceiveSockets(newConfiguration);
         validateNeighbors(newConfiguration);
         validateIctRestConnectivity(newConfiguration);
     }
@@ -134,6 +151,12 @@ public class ReportIxiContext extends ConfigurableIxiContext {
         if (configuration.has(EXTERNAL_REPORT_PORT)) {
             setExternalReportPort(configuration.getInt(EXTERNAL_REPORT_PORT));
         }
+        if (configuration.has(RECEIVER_WORKERS)) {
+            setReceiverWorkers(configuration.getInt(RECEIVER_WORKERS));
+        }
+        if (configuration.has(RECEIVE_SOCKETS)) {
+            setReceiveSockets(configuration.getInt(RECEIVE_SOCKETS));
+        }
     }
 
     private void validateIctRestConnectivity(final JSONObject newConfiguration) {
@@ -143,7 +166,10 @@ public class ReportIxiContext extends ConfigurableIxiContext {
         if (!(newConfiguration.get(ICT_REST_PASSWORD) instanceof String)) {
             throw new IllegalPropertyException(ICT_REST_PASSWORD, "not a string");
         }
-        final JSONObject response = IctRestCaller.getInfo(newConfiguration.getInt(ICT_REST_PORT), newConfiguration.getString(ICT_REST_PASSWORD));
+        // Not through the cache, which would answer with the last good response while the Ict is down,
+        // nor through the breaker of the credentials in use
+        final JSONObject response = IctRestCaller.probeInfo(newConfiguration.getInt(ICT_REST_PORT),
+                newConfiguration.getString(ICT_REST_PASSWORD));
         if (response == null) {
             throw new IllegalPropertyException("Ict REST API port/password", "Connectivity check with Ict REST API failed");
         }
@@ -183,6 +209,26 @@ public class ReportIxiContext extends ConfigurableIxiContext {
         }
     }
 
+    private void validateReceiverWorkers(final JSONObject newConfiguration) {
+        // Optional configuration property
+        if (!newConfiguration.has(RECEIVER_WORKERS)) {
+            return;
+        }
+        if (newConfiguration.getInt(RECEIVER_WORKERS) < 1 || newConfiguration.getInt(RECEIVER_WORKERS) > 64) {
+            throw new IllegalPropertyException(RECEIVER_WORKERS, "must be within range 1-64");
+        }
+    }
+
+    private void validateReceiveSockets(final JSONObject newConfiguration) {
+        // Optional configuration property
+        if (!newConfiguration.has(RECEIVE_SOCKETS)) {
+            return;
+        }
+        if (newConfiguration.getInt(RECEIVE_SOCKETS) < 1 || newConfiguration.getInt(RECEIVE_SOCKETS) > 16) {
+            throw new IllegalPropertyException(RECEIVE_SOCKETS, "must be within range 1-16");
+        }
+    }
+
     private void validateName(final JSONObject newConfiguration) {
         if (!newConfiguration.has(NAME)) {
             throw new IllegalPropertyException(NAME, "not defined");
@@ -311,6 +357,32 @@ public class ReportIxiContext extends ConfigurableIxiContext {
         this.externalReportPort = externalReportPort;
     }
 
+    public int getReceiverWorkers() {
+        // Optional configuration property, defaults to one worker per core, at most four
+        if (receiverWorkers == null) {
+            return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        }
+
+        return receiverWorkers;
+    }
+
+    public void setReceiverWorkers(Integer receiverWorkers) {
+        this.receiverWorkers = receiverWorkers;
+    }
+
+    public int getReceiveSockets() {
+        // Optional configuration property, more than one socket requires SO_REUSEPORT
+        if (receiveSockets == null) {
+            return 1;
+        }
+
+        return receiveSockets;
+    }
+
+    public void setReceiveSockets(Integer receiveSockets) {
+        this.receiveSockets = receiveSockets;
+    }
+
     private class IllegalPropertyException extends IllegalArgumentException {
         private IllegalPropertyException(String field, String cause) {
             super("Invalid property '"+field+"': " + cause + ".");
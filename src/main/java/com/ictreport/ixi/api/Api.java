@@ -3,29 +3,48 @@ package com.ictreport.ixi.api;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.iota.ict.ixi.ReportIxi;
-import java.net.DatagramSocket;
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.SocketException;
+import java.net.SocketOption;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Api {
 
     private final static Logger LOGGER = LogManager.getLogger("Api");
     private final InetSocketAddress address;
-    private final DatagramSocket socket;
+    private final List<DatagramChannel> channels = new ArrayList<>();
     private final Receiver receiver;
     private final Sender sender;
 
     public Api(final ReportIxi reportIxi) {
         this.address = new InetSocketAddress(reportIxi.getReportIxiContext().getHost(), reportIxi.getReportIxiContext().getReportPort());
 
+        int sockets = reportIxi.getReportIxiContext().getReceiveSockets();
+        final SocketOption<Boolean> reusePort = sockets > 1 ? reusePortOption() : null;
+        if (sockets > 1 && reusePort == null) {
+            LOGGER.warn("SO_REUSEPORT is not available on this platform, receiving on a single socket.");
+            sockets = 1;
+        }
+
         try {
-            this.socket = new DatagramSocket(this.address.getPort());
-        } catch (SocketException socketException) {
-            throw new RuntimeException(socketException);
+            for (int i = 0; i < sockets; i++) {
+                final DatagramChannel channel = DatagramChannel.open();
+                channels.add(channel);
+                if (reusePort != null) {
+                    channel.setOption(reusePort, true);
+                }
+                channel.bind(new InetSocketAddress(this.address.getPort()));
+            }
+        } catch (IOException ioException) {
+            closeChannels();
+            throw new RuntimeException(ioException);
         }
 
-        this.receiver = new Receiver(reportIxi, socket);
-        this.sender = new Sender(reportIxi, socket);
+        this.receiver = new Receiver(reportIxi, channels);
+        // The kernel spreads incoming datagrams across the sockets by source, any of them can send.
+        this.sender = new Sender(reportIxi, channels.get(0));
     }
 
     public void init() {
@@ -36,10 +55,7 @@ public class Api {
 	public void shutDown() {
         receiver.shutDown();
         sender.shutDown();
-        try {
-            this.socket.close();
-        } catch (Exception e) {
-        }        
+        closeChannels();
 	}
 
     public Receiver getReceiver() {
@@ -53,4 +69,35 @@ public class Api {
     public InetSocketAddress getAddress() {
         return address;
     }
-}
\ No newline at end of file
+
+    private void closeChannels() {
+        for (final DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (Exception e) {
+            }
+        }
+    }
+
+    /**
+     * SO_REUSEPORT is only exposed as jdk.net.ExtendedSocketOptions.SO_REUSEPORT on JDK 9+ and
+     * only supported by some platforms (Linux, BSD), so it is looked up at runtime.
+     *
+     * @return the option, or null if the running JDK or platform lacks it
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption() {
+        try {
+            final Object option = Class.forName("jdk.net.ExtendedSocketOptions").getField("SO_REUSEPORT").get(null);
+            final SocketOption<Boolean> reusePort = (SocketOption<Boolean>) option;
+            try (DatagramChannel probe = DatagramChannel.open()) {
+                if (!probe.supportedOptions().contains(reusePort)) {
+                    return null;
+                }
+            }
+            return reusePort;
+        } catch (final ReflectiveOperationException | ClassCastException | IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.Payload;
+import com.ictreport.ixi.exchange.SequencedPayload;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sliding window for reliable delivery over UDP. Payloads are numbered and kept until the receiver
+ * acknowledges them cumulatively. At most windowSize payloads are in flight, further ones wait in a
+ * bounded backlog. Unacknowledged payloads are retransmitted after a timeout that doubles with every
+ * attempt for the first maxBackoffDoublings retransmits and then stays at that cap.
+ *
+ * A payload is never given up on while it's unacknowledged: acks are cumulative, so the receiver
+ * could never acknowledge anything past a dropped sequence number again. Loss only happens when the
+ * backlog overflows or the window is reset.
+ *
+ * Sequence numbers start at 1 and are compared wrap-around safe.
+ */
+public class DeliveryWindow {
+
+    public interface Transmitter {
+        void transmit(SequencedPayload sequencedPayload);
+    }
+
+    private final int windowSize;
+    private final int maxBacklog;
+    private final long retransmitTimeout;
+    private final int maxBackoffDoublings;
+    private final Transmitter transmitter;
+    // Insertion ordered by sequence number
+    private final Map<Integer, InFlight> inFlight = new LinkedHashMap<>();
+    private final ArrayDeque<Payload> backlog = new ArrayDeque<>();
+    private int nextSequence = 1;
+    private long delivered = 0;
+    private long retransmitted = 0;
+    private long lost = 0;
+
+    public DeliveryWindow(final int windowSize, final int maxBacklog, final long retransmitTimeout,
+                          final int maxBackoffDoublings, final Transmitter transmitter) {
+        this.windowSize = windowSize;
+        this.maxBacklog = maxBacklog;
+        this.retransmitTimeout = retransmitTimeout;
+        this.maxBackoffDoublings = maxBackoffDoublings;
+        this.transmitter = transmitter;
+    }
+
+    /**
+     * @return false if the window and the backlog are full and the payload was dropped
+     */
+    public synchronized boolean send(final Payload payload, final long now) {
+        if (inFlight.size() < windowSize) {
+            transmitNew(payload, now);
+            return true;
+        }
+        if (backlog.size() >= maxBacklog) {
+            lost++;
+            return false;
+        }
+        backlog.add(payload);
+        return true;
+    }
+
+    /**
+     * @param sequence the highest sequence number up to which the receiver got everything, acks for
+     *                 sequence numbers not sent yet are ignored
+     */
+    public synchronized void acknowledge(final int sequence, final long now) {
+        if (sequence - (nextSequence - 1) > 0) {
+            return;
+        }
+        final Iterator<InFlight> iterator = inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            final InFlight entry = iterator.next();
+            if (entry.sequencedPayload.getSequence() - sequence > 0) {
+                break;
+            }
+            iterator.remove();
+            delivered++;
+        }
+        while (inFlight.size() < windowSize && !backlog.isEmpty()) {
+            transmitNew(backlog.poll(), now);
+        }
+    }
+
+    /**
+     * Retransmits the payloads whose timeout elapsed, to be called periodically.
+     */
+    public synchronized void retransmit(final long now) {
+        final Iterator<InFlight> iterator = inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            final InFlight entry = iterator.next();
+            if (now < entry.deadline) {
+                continue;
+            }
+            entry.deadline = now + (retransmitTimeout << Math.min(entry.attempts, maxBackoffDoublings));
+            entry.attempts++;
+            retransmitted++;
+            transmitter.transmit(entry.sequencedPayload);
+        }
+        while (inFlight.size() < windowSize && !backlog.isEmpty()) {
+            transmitNew(backlog.poll(), now);
+        }
+    }
+
+    /**
+     * Forgets everything in flight and restarts numbering at 1, for a new session with the receiver.
+     */
+    public synchronized void reset() {
+        lost += inFlight.size() + backlog.size();
+        inFlight.clear();
+        backlog.clear();
+        nextSequence = 1;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight.size();
+    }
+
+    public synchronized int getBacklog() {
+        return backlog.size();
+    }
+
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    public synchronized long getRetransmitted() {
+        return retransmitted;
+    }
+
+    /**
+     * @return payloads dropped because the backlog was full or the window was reset
+     */
+    public synchronized long getLost() {
+        return lost;
+    }
+
+    private void transmitNew(final Payload payload, final long now) {
+        final SequencedPayload sequencedPayload = new SequencedPayload(nextSequence++, payload);
+        inFlight.put(sequencedPayload.getSequence(), new InFlight(sequencedPayload, now + retransmitTimeout));
+        transmitter.transmit(sequencedPayload);
+    }
+
+    private static final class InFlight {
+        private final SequencedPayload sequencedPayload;
+        private long deadline;
+        private int attempts = 1;
+
+        private InFlight(final SequencedPayload sequencedPayload, final long deadline) {
+            this.sequencedPayload = sequencedPayload;
+            this.deadline = deadline;
+        }
+    }
+}
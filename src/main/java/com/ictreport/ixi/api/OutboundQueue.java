@@ -0,0 +1,253 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.*;
+import com.ictreport.ixi.utils.RingBuffer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of outbound datagrams, drained by a single writer thread. Callers never wait for
+ * encoding or the socket, only for room in the queue, and only for payloads whose policy is BLOCK.
+ */
+public class OutboundQueue {
+
+    public enum Policy {
+        /** Drop the payload if the queue is full, for payloads that are resent periodically anyway. */
+        DROP,
+        /** Wait up to the block timeout for room in the queue, then drop. */
+        BLOCK
+    }
+
+    public interface Writer {
+        void write(Outbound outbound);
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger("OutboundQueue");
+    private static final Map<Class<? extends Payload>, Policy> POLICIES = new HashMap<>();
+
+    static {
+        POLICIES.put(PingPayload.class, Policy.DROP);
+        POLICIES.put(ReceivedPingPayload.class, Policy.DROP);
+        POLICIES.put(SubmittedPingPayload.class, Policy.DROP);
+        POLICIES.put(MetadataPayload.class, Policy.DROP);
+        // Lost sequenced payloads are retransmitted by the delivery window.
+        POLICIES.put(SequencedPayload.class, Policy.DROP);
+        POLICIES.put(StatusPayload.class, Policy.BLOCK);
+        POLICIES.put(StatusDeltaPayload.class, Policy.BLOCK);
+        POLICIES.put(EnvelopePayload.class, Policy.BLOCK);
+        POLICIES.put(RequestUuidPayload.class, Policy.BLOCK);
+    }
+
+    private final RingBuffer<Outbound> queue;
+    // Permits are free slots, acquiring one first guarantees the publish to the ring succeeds.
+    private final Semaphore space;
+    private final long blockTimeout;
+    private final Writer writer;
+    private Thread writerThread;
+    private volatile boolean isWriting = false;
+    private final ConcurrentHashMap<Class<? extends Payload>, AtomicLong> dropped = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    public OutboundQueue(final int capacity, final long blockTimeout, final Writer writer) {
+        this.queue = new RingBuffer<>(capacity, RingBuffer.OverflowPolicy.DROP_NEWEST,
+                new RingBuffer.DropHandler<Outbound>() {
+                    @Override
+                    public void dropped(final Outbound outbound) {
+                        countDrop(outbound.getType());
+                    }
+                });
+        this.space = new Semaphore(queue.capacity());
+        this.blockTimeout = blockTimeout;
+        this.writer = writer;
+    }
+
+    public synchronized void start() {
+        if (writerThread != null) {
+            return;
+        }
+        isWriting = true;
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "Sender writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public synchronized void shutDown() {
+        isWriting = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            writerThread = null;
+        }
+    }
+
+    /**
+     * @return false if the outbound was dropped by its policy
+     */
+    public boolean offer(final Outbound outbound) {
+        final boolean admitted;
+        if (policyOf(outbound.getType()) == Policy.BLOCK) {
+            try {
+                admitted = space.tryAcquire(blockTimeout, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                countDrop(outbound.getType());
+                return false;
+            }
+        } else {
+            admitted = space.tryAcquire();
+        }
+        if (!admitted) {
+            countDrop(outbound.getType());
+            return false;
+        }
+        if (!queue.publish(outbound)) {
+            space.release();
+            return false;
+        }
+        return true;
+    }
+
+    public static Policy policyOf(final Class<? extends Payload> type) {
+        final Policy policy = POLICIES.get(type);
+        return policy != null ? policy : Policy.BLOCK;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getMaxQueueDepth() {
+        return queue.getMaxDepth();
+    }
+
+    public long getDropped(final Class<? extends Payload> type) {
+        final AtomicLong count = dropped.get(type);
+        return count != null ? count.get() : 0;
+    }
+
+    public long getDropped() {
+        long total = 0;
+        for (final AtomicLong count : dropped.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return mean time from offer until the writer handed the datagram to the channel
+     */
+    public long getAverageLatencyNanos() {
+        final long count = sent.get();
+        return count > 0 ? totalLatency.get() / count : 0;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatency.get();
+    }
+
+    private void drain() {
+        while (isWriting) {
+            final Outbound outbound;
+            try {
+                outbound = queue.take();
+            } catch (final InterruptedException e) {
+                break;
+            }
+            space.release();
+            try {
+                writer.write(outbound);
+            } catch (final RuntimeException e) {
+                e.printStackTrace();
+                LOGGER.warn("Sender writer failed unexpectedly", e);
+            }
+            recordLatency(System.nanoTime() - outbound.getEnqueuedAt());
+        }
+    }
+
+    private void recordLatency(final long latency) {
+        sent.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
+        }
+    }
+
+    private void countDrop(final Class<? extends Payload> type) {
+        AtomicLong count = dropped.get(type);
+        if (count == null) {
+            final AtomicLong existing = dropped.putIfAbsent(type, count = new AtomicLong());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Outbound queue full, dropped %s", type.getSimpleName()));
+        }
+    }
+
+    public static final class Outbound {
+        private final Class<? extends Payload> type;
+        private final Payload payload;
+        private final InetSocketAddress address;
+        private final int wireVersion;
+        private final boolean fragment;
+        private final long enqueuedAt = System.nanoTime();
+
+        /**
+         * @param type the payload class, which picks the policy, also for outbounds encoded by the writer
+         * @param payload the payload, null if the writer produces the datagram itself
+         */
+        public Outbound(final Class<? extends Payload> type, final Payload payload, final InetSocketAddress address,
+                        final int wireVersion, final boolean fragment) {
+            this.type = type;
+            this.payload = payload;
+            this.address = address;
+            this.wireVersion = wireVersion;
+            this.fragment = fragment;
+        }
+
+        public Class<? extends Payload> getType() {
+            return type;
+        }
+
+        public Payload getPayload() {
+            return payload;
+        }
+
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+
+        public int getWireVersion() {
+            return wireVersion;
+        }
+
+        public boolean isFragment() {
+            return fragment;
+        }
+
+        public long getEnqueuedAt() {
+            return enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.EnvelopePayload;
+import com.ictreport.ixi.exchange.Payload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coalesces payloads into EnvelopePayloads. A batch is handed to the sink as soon as it holds
+ * maxPayloads payloads, before its encoded size would exceed maxBytes, or on the next flush(),
+ * which the owner calls periodically to bound the delay a payload can spend waiting.
+ */
+public class PayloadBatcher {
+
+    public interface Sink {
+        void send(Payload payload);
+    }
+
+    public interface Sizer {
+        /**
+         * @return the encoded length of the payload on its own
+         */
+        int sizeOf(Payload payload);
+    }
+
+    // Separator between enclosed payloads, a comma in JSON
+    private static final int SEPARATOR_LENGTH = 1;
+    private final int maxPayloads;
+    private final int maxBytes;
+    private final Sizer sizer;
+    private final Sink sink;
+    private List<Payload> pending = new ArrayList<>();
+    private int pendingBytes = 0;
+
+    public PayloadBatcher(final int maxPayloads, final Sink sink) {
+        this(maxPayloads, Integer.MAX_VALUE, null, sink);
+    }
+
+    /**
+     * @param maxBytes bound of the enclosed payloads' encoded length, leaving room for the envelope
+     *                 and anything else wrapping the batch is up to the owner
+     */
+    public PayloadBatcher(final int maxPayloads, final int maxBytes, final Sizer sizer, final Sink sink) {
+        this.maxPayloads = maxPayloads;
+        this.maxBytes = maxBytes;
+        this.sizer = sizer;
+        this.sink = sink;
+    }
+
+    public void add(final Payload payload) {
+        final int size = sizer != null ? sizer.sizeOf(payload) + SEPARATOR_LENGTH : 0;
+        List<Payload> full = null;
+        List<Payload> batch = null;
+        synchronized (this) {
+            if (!pending.isEmpty() && pendingBytes + size > maxBytes) {
+                full = drain();
+            }
+            pending.add(payload);
+            pendingBytes += size;
+            if (pending.size() >= maxPayloads || pendingBytes >= maxBytes) {
+                batch = drain();
+            }
+        }
+        if (full != null) {
+            sink.send(wrap(full));
+        }
+        if (batch != null) {
+            sink.send(wrap(batch));
+        }
+    }
+
+    public void flush() {
+        final List<Payload> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = drain();
+        }
+        sink.send(wrap(batch));
+    }
+
+    private List<Payload> drain() {
+        final List<Payload> batch = pending;
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        return batch;
+    }
+
+    private static Payload wrap(final List<Payload> batch) {
+        return batch.size() == 1 ? batch.get(0) : new EnvelopePayload(batch);
+    }
+}
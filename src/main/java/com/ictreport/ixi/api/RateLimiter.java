@@ -0,0 +1,65 @@
+package com.ictreport.ixi.api;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket admission control per traffic source. Every source may send a burst of up to
+ * burst packets, refilled at ratePerSecond.
+ *
+ * Only identified sources should be admitted through the limiter, it keeps a bucket for every
+ * source it sees and starts over once it tracks more than maxSources.
+ */
+public class RateLimiter {
+
+    private final double ratePerNano;
+    private final double burst;
+    private final int maxSources;
+    private final ConcurrentHashMap<Object, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(final double ratePerSecond, final int burst, final int maxSources) {
+        this.ratePerNano = ratePerSecond / 1e9;
+        this.burst = burst;
+        this.maxSources = maxSources;
+    }
+
+    public boolean tryAcquire(final Object source) {
+        return tryAcquire(source, System.nanoTime());
+    }
+
+    boolean tryAcquire(final Object source, final long now) {
+        TokenBucket bucket = buckets.get(source);
+        if (bucket == null) {
+            if (buckets.size() >= maxSources) {
+                buckets.clear();
+            }
+            bucket = new TokenBucket(burst, now);
+            final TokenBucket existing = buckets.putIfAbsent(source, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        return bucket.tryTake(now, ratePerNano, burst);
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(final double tokens, final long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        private synchronized boolean tryTake(final long now, final double ratePerNano, final double burst) {
+            if (now > refilledAt) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+                refilledAt = now;
+            }
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.Fragments;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects fragment frames until every fragment of a datagram arrived. Fragments may arrive in
+ * any order and from several threads.
+ *
+ * Memory is bounded: at most maxBytes of fragment data is held, making room evicts the oldest
+ * incomplete datagrams. Incomplete datagrams are discarded after timeout milliseconds.
+ */
+public class Reassembler {
+
+    private final int maxBytes;
+    private final long timeout;
+    // Insertion ordered, so the oldest incomplete datagram comes first.
+    private final Map<Key, Partial> partials = new LinkedHashMap<>();
+    private int bytes = 0;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    public Reassembler(final int maxBytes, final long timeout) {
+        this.maxBytes = maxBytes;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param source identifies the sender, message ids are only unique per sender
+     * @param fragment a single fragment frame, its content is copied
+     * @return the reassembled datagram once the last missing fragment arrived, otherwise null
+     */
+    public synchronized ByteBuffer add(final Object source, final ByteBuffer fragment, final long now) {
+        expire(now);
+
+        final int count = Fragments.count(fragment);
+        final int index = Fragments.index(fragment);
+        final ByteBuffer data = Fragments.data(fragment);
+        if (count < 2 || count > Fragments.MAX_COUNT || index >= count) {
+            discarded.incrementAndGet();
+            return null;
+        }
+
+        final Key key = new Key(source, Fragments.messageId(fragment));
+        Partial partial = partials.get(key);
+        if (partial == null) {
+            partial = new Partial(count, now);
+            partials.put(key, partial);
+        } else if (partial.parts.length != count) {
+            remove(key, partial);
+            discarded.incrementAndGet();
+            return null;
+        }
+        if (partial.parts[index] != null) {
+            // Duplicate
+            return null;
+        }
+
+        makeRoom(data.remaining(), key);
+        if (bytes + data.remaining() > maxBytes) {
+            // This datagram alone exceeds the bound.
+            remove(key, partial);
+            discarded.incrementAndGet();
+            return null;
+        }
+        final byte[] part = new byte[data.remaining()];
+        data.get(part);
+        partial.parts[index] = part;
+        partial.received++;
+        partial.length += part.length;
+        bytes += part.length;
+
+        if (partial.received < count) {
+            return null;
+        }
+        remove(key, partial);
+        completed.incrementAndGet();
+        final ByteBuffer datagram = ByteBuffer.allocate(partial.length);
+        for (final byte[] p : partial.parts) {
+            datagram.put(p);
+        }
+        datagram.flip();
+        return datagram;
+    }
+
+    public synchronized int getPendingBytes() {
+        return bytes;
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return datagrams given up on: invalid, timed out or evicted to bound memory
+     */
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    private void expire(final long now) {
+        final Iterator<Map.Entry<Key, Partial>> iterator = partials.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Partial partial = iterator.next().getValue();
+            if (now - partial.createdAt < timeout) {
+                break;
+            }
+            iterator.remove();
+            bytes -= partial.length;
+            discarded.incrementAndGet();
+        }
+    }
+
+    private void makeRoom(final int length, final Key keep) {
+        final Iterator<Map.Entry<Key, Partial>> iterator = partials.entrySet().iterator();
+        while (bytes + length > maxBytes && iterator.hasNext()) {
+            final Map.Entry<Key, Partial> entry = iterator.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            bytes -= entry.getValue().length;
+            discarded.incrementAndGet();
+        }
+    }
+
+    private void remove(final Key key, final Partial partial) {
+        partials.remove(key);
+        bytes -= partial.length;
+    }
+
+    private static final class Partial {
+        private final byte[][] parts;
+        private final long createdAt;
+        private int received = 0;
+        private int length = 0;
+
+        private Partial(final int count, final long createdAt) {
+            this.parts = new byte[count][];
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class Key {
+        private final Object source;
+        private final int messageId;
+
+        private Key(final Object source, final int messageId) {
+            this.source = source;
+            this.messageId = messageId;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return messageId == key.messageId && Objects.equals(source, key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(source) + messageId;
+        }
+    }
+}
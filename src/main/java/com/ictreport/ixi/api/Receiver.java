@@ -1,76 +1,281 @@
 package com.ictreport.ixi.api;
 
 import com.ictreport.ixi.exchange.*;
-import com.ictreport.ixi.model.Address;
 import com.ictreport.ixi.utils.Constants;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ictreport.ixi.model.Neighbor;
+import com.ictreport.ixi.utils.RingBuffer;
 import org.iota.ict.ixi.ReportIxi;
 
 public class Receiver extends Thread {
 
     private final static Logger LOGGER = LogManager.getLogger("Receiver");
+    // One byte more than the longest datagram, a full buffer means the datagram was truncated.
+    private static final int RECEIVE_BUFFER_SIZE = Fragments.MAX_DATAGRAM_LENGTH + 1;
+    private static final int RECEIVE_QUEUE_CAPACITY = 1024;
+    private static final int MAX_POOLED_BUFFERS = RECEIVE_QUEUE_CAPACITY;
+    // Under overload the newest datagrams are dropped, like the kernel would once its buffer is full.
+    private static final RingBuffer.OverflowPolicy OVERFLOW_POLICY = RingBuffer.OverflowPolicy.DROP_NEWEST;
+    // Legitimate peers send a few packets per minute, the bucket only bites on floods.
+    private static final double RATE_LIMIT_PER_SECOND = 20;
+    private static final int RATE_LIMIT_BURST = 100;
+    private static final int RATE_LIMIT_MAX_SOURCES = 64;
+    private static final int REASSEMBLY_MAX_BYTES = 256 * 1024;
+    private static final long REASSEMBLY_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final Object RCS_SOURCE = new Object();
     private final ReportIxi reportIxi;
-    private final DatagramSocket socket;
-    private boolean isReceiving = false;
+    private final List<ReceiveLoop> receiveLoops = new ArrayList<>();
+    private final BufferPool bufferPool = new BufferPool(RECEIVE_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final RingBuffer<Packet> receiveQueue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong receivedPackets = new AtomicLong();
+    private final AtomicLong droppedPackets = new AtomicLong();
+    private final RateLimiter rateLimiter =
+            new RateLimiter(RATE_LIMIT_PER_SECOND, RATE_LIMIT_BURST, RATE_LIMIT_MAX_SOURCES);
+    private final Reassembler reassembler = new Reassembler(REASSEMBLY_MAX_BYTES, REASSEMBLY_TIMEOUT);
+    private final AtomicLong unknownSourcePackets = new AtomicLong();
+    private final AtomicLong rateLimitedPackets = new AtomicLong();
+    private final AtomicLong malformedPackets = new AtomicLong();
+    private volatile boolean isReceiving = false;
 
-    public Receiver(final ReportIxi reportIxi, final DatagramSocket socket) {
+    public Receiver(final ReportIxi reportIxi, final DatagramChannel channel) {
+        this(reportIxi, Collections.singletonList(channel));
+    }
+
+    /**
+     * @param channels channels bound to the same port, each one is served by its own receive loop
+     */
+    public Receiver(final ReportIxi reportIxi, final List<DatagramChannel> channels) {
         super("Receiver");
 
         this.reportIxi = reportIxi;
-        this.socket = socket;
+        this.receiveQueue = new RingBuffer<>(RECEIVE_QUEUE_CAPACITY, OVERFLOW_POLICY,
+                new RingBuffer.DropHandler<Packet>() {
+                    @Override
+                    public void dropped(final Packet packet) {
+                        droppedPackets.incrementAndGet();
+                        bufferPool.release(packet.data);
+                    }
+                });
+
+        final int workerCount = reportIxi.getReportIxiContext().getReceiverWorkers();
+        for (int i = 0; i < workerCount; i++) {
+            final Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "Receiver worker " + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+
+        try {
+            for (final DatagramChannel channel : channels) {
+                receiveLoops.add(new ReceiveLoop(channel));
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
     public void run() {
         isReceiving = true;
+        for (final Thread worker : workers) {
+            worker.start();
+        }
+        // This thread serves the first channel, every further one gets a thread of its own.
+        final List<Thread> receiveThreads = new ArrayList<>();
+        for (int i = 1; i < receiveLoops.size(); i++) {
+            final Thread receiveThread = new Thread(receiveLoops.get(i), "Receiver " + i);
+            receiveThread.setDaemon(true);
+            receiveThread.start();
+            receiveThreads.add(receiveThread);
+        }
 
-        while (isReceiving) {
-            final byte[] buf = new byte[1024];
-            final DatagramPacket packet = new DatagramPacket(buf, buf.length);
+        receiveLoops.get(0).run();
+
+        for (final Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Rejects traffic before anything is decoded: unknown senders, senders exceeding their rate
+     * and datagrams that can't be a payload.
+     */
+    private boolean admit(final InetSocketAddress source, final Neighbor neighbor, final ByteBuffer data) {
+        if (neighbor == null && !isPacketSentFromRCS(source)) {
+            unknownSourcePackets.incrementAndGet();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Received packet from unknown address: " + source.getAddress());
+            }
+            return false;
+        }
+        if (!rateLimiter.tryAcquire(source.getAddress())) {
+            rateLimitedPackets.incrementAndGet();
+            return false;
+        }
+        if (!Payload.isWellFormed(data)) {
+            malformedPackets.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
 
+    private void work() {
+        while (isReceiving) {
+            final Packet packet;
             try {
-                socket.receive(packet);
-                processPacket(packet);
-            } catch (final IOException e) {
-                if (isReceiving)
-                    e.printStackTrace();
+                packet = receiveQueue.take();
+            } catch (final InterruptedException e) {
+                break;
+            }
+            try {
+                processPacket(packet.neighbor, packet.data);
+            } catch (final RuntimeException e) {
+                e.printStackTrace();
+                LOGGER.warn("Receiver worker failed unexpectedly", e);
+            } finally {
+                bufferPool.release(packet.data);
             }
         }
     }
 
     public void processPayload(final Neighbor neighbor, final Payload payload) {
+        processPayload(neighbor, payload, null);
+    }
+
+    /**
+     * @param container the envelope or sequenced payload the payload was enclosed in, or null
+     */
+    private void processPayload(final Neighbor neighbor, final Payload payload, final Payload container) {
+        if (container != null && !Payload.canEnclose(container, payload)) {
+            throw new IllegalArgumentException("Payload nested too deeply");
+        }
         if (payload instanceof PingPayload) {
             processPingPayload((PingPayload) payload);
         } else if (payload instanceof MetadataPayload) {
             processMetadataPacket(neighbor, (MetadataPayload) payload);
         } else if (payload instanceof UuidPayload) {
             processUuidPayload((UuidPayload) payload);
+        } else if (payload instanceof StatusAckPayload || payload instanceof DeliveryAckPayload) {
+            // Only the RCS acknowledges, an ack from a neighbor could switch off reliable delivery
+            if (neighbor != null) {
+                LOGGER.debug(String.format("Ignored %s from Neighbor[%s]", payload.getClass().getSimpleName(),
+                        neighbor.getAddress().getReportSocketAddress()));
+            } else if (payload instanceof StatusAckPayload) {
+                processStatusAckPayload((StatusAckPayload) payload);
+            } else {
+                reportIxi.getApi().getSender().acknowledgeDelivery(((DeliveryAckPayload) payload).getSequence());
+            }
+        } else if (payload instanceof EnvelopePayload) {
+            for (final Payload enclosedPayload : ((EnvelopePayload) payload).getPayloads()) {
+                processPayload(neighbor, enclosedPayload, payload);
+            }
+        } else if (payload instanceof SequencedPayload) {
+            processPayload(neighbor, ((SequencedPayload) payload).getPayload(), payload);
         }
     }
 
     public void shutDown() {
         isReceiving = false;
+        for (final ReceiveLoop receiveLoop : receiveLoops) {
+            receiveLoop.selector.wakeup();
+        }
     }
 
-    private void processPacket(final DatagramPacket packet) {
-        LOGGER.debug("Processing packet from address:" + packet.getAddress() + ", port:" + packet.getPort());
-        Neighbor neighbor = determineNeighborWhoSent(packet);
-        if (neighbor == null && !isPacketSentFromRCS(packet)) {
-            LOGGER.warn("Received packet from unknown address: " + packet.getAddress());
-            return;
-        }
+    /**
+     * @return number of sockets datagrams are received on
+     */
+    public int getReceiveSockets() {
+        return receiveLoops.size();
+    }
 
-        String data = new String(packet.getData(), 0, packet.getLength());
+    /**
+     * @return datagrams received and waiting for a worker
+     */
+    public int getQueueDepth() {
+        return receiveQueue.size();
+    }
 
+    public long getMaxQueueDepth() {
+        return receiveQueue.getMaxDepth();
+    }
+
+    /**
+     * @return datagrams dropped because the workers fell behind and the receive queue was full
+     */
+    public long getOverflowedPackets() {
+        return receiveQueue.getOverflowed();
+    }
+
+    /**
+     * @return datagrams rejected because the sender is neither a neighbor nor the RCS
+     */
+    public long getUnknownSourcePackets() {
+        return unknownSourcePackets.get();
+    }
+
+    /**
+     * @return datagrams rejected because their sender exceeded its rate limit
+     */
+    public long getRateLimitedPackets() {
+        return rateLimitedPackets.get();
+    }
+
+    /**
+     * @return datagrams rejected by the pre-parse check, without being decoded
+     */
+    public long getMalformedPackets() {
+        return malformedPackets.get();
+    }
+
+    public Reassembler getReassembler() {
+        return reassembler;
+    }
+
+    public long getReceivedPackets() {
+        return receivedPackets.get();
+    }
+
+    /**
+     * @return datagrams that were received but not processed: oversized, rejected, overflowed or undecodable
+     */
+    public long getDroppedPackets() {
+        return droppedPackets.get();
+    }
+
+    /**
+     * @param neighbor the neighbor who sent the packet, null if the RCS sent it
+     */
+    private void processPacket(final Neighbor neighbor, ByteBuffer data) {
         try {
-            final Payload payload = Payload.deserialize(data);
+            if (Fragments.isFragment(data)) {
+                data = reassembler.add(neighbor != null ? neighbor : RCS_SOURCE, data, System.currentTimeMillis());
+                if (data == null) {
+                    return;
+                }
+            }
+            final Payload payload = Payload.decode(data);
             processPayload(neighbor, payload);
         } catch (final Exception e) {
+            droppedPackets.incrementAndGet();
             if (neighbor != null) {
                 LOGGER.info(String.format("Received invalid payload from Neighbor[%s]",
                         neighbor.getAddress().getReportSocketAddress()));
@@ -88,11 +293,21 @@ public class Receiver extends Thread {
         } else {
             LOGGER.info(String.format("Current uuid was successfully validated by RCS"));
         }
+        final int rcsWireVersion = BinaryCodec.negotiate(uuidPayload.getWireVersion());
+        reportIxi.getApi().getSender().setRcsWireVersion(rcsWireVersion);
+        reportIxi.getApi().getSender().setRcsFeatures(uuidPayload.getFeatures());
+        LOGGER.info(String.format("Using %s wire format for RCS traffic",
+                rcsWireVersion > 0 ? "binary v" + rcsWireVersion : "JSON"));
         synchronized (reportIxi.waitingForUuid) {
             reportIxi.waitingForUuid.notify();
         }
     }
 
+    private void processStatusAckPayload(final StatusAckPayload statusAckPayload) {
+        LOGGER.debug(String.format("RCS acknowledged status keyframe %d", statusAckPayload.getSequence()));
+        reportIxi.getApi().getSender().acknowledgeStatus(statusAckPayload.getSequence());
+    }
+
     private void processMetadataPacket(final Neighbor neighbor, final MetadataPayload metadataPayload) {
 
         LOGGER.debug(String.format("Received MetadataPayload from neighbor[%s]",
@@ -112,6 +327,16 @@ public class Receiver extends Thread {
             LOGGER.info(String.format("Received new uuid from neighbor[%s]",
                     neighbor.getAddress().getReportSocketAddress()));
         }
+
+        neighbor.setFeatures(metadataPayload.getFeatures());
+
+        final int wireVersion = BinaryCodec.negotiate(metadataPayload.getWireVersion());
+        if (neighbor.getWireVersion() != wireVersion) {
+            neighbor.setWireVersion(wireVersion);
+            LOGGER.info(String.format("Neighbor[%s] negotiated %s wire format",
+                    neighbor.getAddress().getReportSocketAddress(),
+                    wireVersion > 0 ? "binary v" + wireVersion : "JSON"));
+        }
     }
 
     private void processPingPayload(final PingPayload pingPayload) {
@@ -119,39 +344,91 @@ public class Receiver extends Thread {
                 new ReceivedPingPayload(reportIxi.getMetadata().getUuid(), pingPayload);
 
         if (reportIxi.getMetadata().getUuid() != null) {
-            reportIxi.getApi().getSender().send(receivedPingPayload, Constants.RCS_HOST, Constants.RCS_PORT);
+            reportIxi.getApi().getSender().queueForRcs(receivedPingPayload);
         }
     }
 
-    private boolean isPacketSentFromRCS(final DatagramPacket packet) {
-        try {
-            final boolean sameIP = InetAddress.getByName(Constants.RCS_HOST).getHostAddress()
-                    .equals(packet.getAddress().getHostAddress());
-            final boolean samePort = Constants.RCS_PORT == packet.getPort();
-            return sameIP && samePort;
-        } catch (final UnknownHostException e) {
-            return false;
-        }
+    private boolean isPacketSentFromRCS(final InetSocketAddress source) {
+        return Constants.RCS_PORT == source.getPort()
+                && source.getAddress().equals(reportIxi.getAddressResolver().resolve(Constants.RCS_HOST));
     }
 
-    private Neighbor determineNeighborWhoSent(final DatagramPacket packet) {
-        // Strict port matching neighbors
-        for (final Neighbor neighbor : reportIxi.getNeighbors()) {
-            final InetSocketAddress inetSocketAddress = new InetSocketAddress(packet.getAddress(), packet.getPort());
-            final Address address = Address.parse(inetSocketAddress.toString());
-            if (neighbor.isNeighborReportAddress(address, true)) {
-                return neighbor;
+    private Neighbor determineNeighborWhoSent(final InetSocketAddress source) {
+        return reportIxi.getNeighborIndex().find(source);
+    }
+
+    private final class ReceiveLoop implements Runnable {
+        private final DatagramChannel channel;
+        private final Selector selector;
+
+        private ReceiveLoop(final DatagramChannel channel) throws IOException {
+            this.channel = channel;
+            this.selector = Selector.open();
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+        }
+
+        @Override
+        public void run() {
+            while (isReceiving) {
+                try {
+                    selector.select();
+                    selector.selectedKeys().clear();
+                    drain();
+                } catch (final IOException | ClosedSelectorException e) {
+                    if (isReceiving)
+                        e.printStackTrace();
+                }
+            }
+
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                // Shutting down anyway
             }
         }
-        // Non-strict matching, port ignored
-        for (final Neighbor neighbor : reportIxi.getNeighbors()) {
-            final InetSocketAddress inetSocketAddress = new InetSocketAddress(packet.getAddress(), packet.getPort());
-            final Address address = Address.parse(inetSocketAddress.toString());
-            if (neighbor.isNeighborReportAddress(address, false)) {
-                return neighbor;
+
+        /**
+         * Receives every datagram that is ready, until the channel would block, and hands the admitted
+         * ones to the workers. Nothing but the receive and cheap admission checks happens on this thread,
+         * so slow processing can't stall the socket.
+         */
+        private void drain() throws IOException {
+            while (isReceiving) {
+                final ByteBuffer buffer = bufferPool.acquire();
+                final SocketAddress source = channel.receive(buffer);
+                if (source == null) {
+                    bufferPool.release(buffer);
+                    return;
+                }
+                receivedPackets.incrementAndGet();
+                buffer.flip();
+                if (buffer.limit() == buffer.capacity()) {
+                    // The datagram filled the buffer, the rest was discarded by the channel.
+                    droppedPackets.incrementAndGet();
+                    bufferPool.release(buffer);
+                    LOGGER.debug("Dropped datagram exceeding the receive buffer from " + source);
+                    continue;
+                }
+                final InetSocketAddress sourceAddress = (InetSocketAddress) source;
+                final Neighbor neighbor = determineNeighborWhoSent(sourceAddress);
+                if (!admit(sourceAddress, neighbor, buffer)) {
+                    droppedPackets.incrementAndGet();
+                    bufferPool.release(buffer);
+                    continue;
+                }
+                receiveQueue.publish(new Packet(neighbor, buffer));
             }
         }
-        // No match
-        return null;
+    }
+
+    private static final class Packet {
+        private final Neighbor neighbor;
+        private final ByteBuffer data;
+
+        private Packet(final Neighbor neighbor, final ByteBuffer data) {
+            this.neighbor = neighbor;
+            this.data = data;
+        }
     }
 }
@@ -1,17 +1,21 @@
 package com.ictreport.ixi.api;
 
 import com.ictreport.ixi.exchange.*;
+import com.ictreport.ixi.model.Address;
 import com.ictreport.ixi.model.Stats;
 import com.ictreport.ixi.utils.CPUMonitor;
 import com.ictreport.ixi.utils.RandomStringGenerator;
+import com.ictreport.ixi.utils.TaskScheduler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.iota.ict.ixi.ReportIxi;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -22,91 +26,168 @@ import org.iota.ict.model.TransactionBuilder;
 public class Sender {
 
     private static final Logger LOGGER = LogManager.getLogger("Sender");
+    // Anything longer couldn't be sent even in fragments
+    private static final int STATUS_BUFFER_SIZE = Fragments.MAX_COUNT * Fragments.MAX_DATA_LENGTH;
+    private static final int STATUS_KEYFRAME_INTERVAL = 15;
+    private static final int BATCH_MAX_PAYLOADS = 16;
+    // Room for the envelope around a batch and the sequenced payload around that
+    private static final int BATCH_FRAMING_RESERVE = 128;
+    private static final int BATCH_MAX_BYTES = Fragments.MAX_DATAGRAM_LENGTH - BATCH_FRAMING_RESERVE;
+    private static final long BATCH_FLUSH_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    private static final int OUTBOUND_QUEUE_CAPACITY = 256;
+    private static final int DELIVERY_WINDOW_SIZE = 32;
+    private static final int DELIVERY_BACKLOG = 256;
+    private static final long RETRANSMIT_TIMEOUT = TimeUnit.SECONDS.toMillis(2);
+    // The retransmit timeout doubles up to 64 s, a payload is retransmitted until it's acknowledged
+    private static final int RETRANSMIT_BACKOFF_DOUBLINGS = 5;
+    private static final long RETRANSMIT_INTERVAL = 500;
+    private static final long OUTBOUND_BLOCK_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
+    // Two threads, so a slow Ict sync in the status task doesn't hold up the others
+    private static final int SCHEDULER_THREADS = 2;
+    private static final long METADATA_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long METADATA_OFFSET = 0;
+    private static final long METADATA_JITTER = TimeUnit.SECONDS.toMillis(5);
+    // The status interval follows the Ict round duration, within these bounds
+    private static final long MIN_STATUS_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final long MAX_STATUS_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    // Status and ping start after their minimum offset plus a phase derived from the uuid
+    private static final long STATUS_OFFSET = TimeUnit.SECONDS.toMillis(20);
+    private static final int STATUS_JITTER_DIVISOR = 12;
+    private static final long STATUS_MAX_SILENCE = TimeUnit.MINUTES.toMillis(5);
+    static final long PING_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    private static final long PING_OFFSET = TimeUnit.SECONDS.toMillis(40);
+    static final long PING_JITTER = TimeUnit.SECONDS.toMillis(30);
     private final ReportIxi reportIxi;
-    private final DatagramSocket socket;
-    private final List<Timer> timers = new ArrayList<>();
+    private final DatagramChannel channel;
+    private final TaskScheduler scheduler = new TaskScheduler("Sender scheduler", SCHEDULER_THREADS);
+    // Short timer tasks with deadlines of their own, kept away from the tasks that block on the Ict
+    private final TaskScheduler timerScheduler = new TaskScheduler("Sender timers", 1);
     private final RandomStringGenerator randomStringGenerator = new RandomStringGenerator();
+    // Owned by the writer thread
+    private final StatusEncoder statusEncoder = new StatusEncoder(STATUS_BUFFER_SIZE);
+    private final ByteBuffer fragmentBuffer = ByteBuffer.allocate(Fragments.MAX_DATAGRAM_LENGTH);
+    private int nextMessageId = 0;
+    private final OutboundQueue outboundQueue = new OutboundQueue(OUTBOUND_QUEUE_CAPACITY, OUTBOUND_BLOCK_TIMEOUT,
+            new OutboundQueue.Writer() {
+                @Override
+                public void write(final OutboundQueue.Outbound outbound) {
+                    Sender.this.write(outbound);
+                }
+            });
+    private final StatusChangeDetector statusChangeDetector = new StatusChangeDetector(STATUS_MAX_SILENCE);
+    private volatile TaskScheduler.Task statusTask;
+    // The status report on its way to the writer, it counts as sent once written
+    private volatile PendingStatus pendingStatus;
+    private final StatusDeltaTracker statusDeltaTracker = new StatusDeltaTracker(STATUS_KEYFRAME_INTERVAL);
+    private final PayloadBatcher rcsBatcher = new PayloadBatcher(BATCH_MAX_PAYLOADS, BATCH_MAX_BYTES,
+            new PayloadBatcher.Sizer() {
+                @Override
+                public int sizeOf(final Payload payload) {
+                    return Payload.encodedLength(payload, rcsWireVersion);
+                }
+            }, new PayloadBatcher.Sink() {
+                @Override
+                public void send(final Payload payload) {
+                    sendToRcs(payload);
+                }
+            });
+    private final DeliveryWindow rcsDeliveryWindow = new DeliveryWindow(DELIVERY_WINDOW_SIZE, DELIVERY_BACKLOG,
+            RETRANSMIT_TIMEOUT, RETRANSMIT_BACKOFF_DOUBLINGS, new DeliveryWindow.Transmitter() {
+                @Override
+                public void transmit(final SequencedPayload sequencedPayload) {
+                    send(sequencedPayload, rcsAddress(), rcsWireVersion,
+                            Features.isEnabled(rcsFeatures, Features.FRAGMENT));
+                }
+            });
+    private volatile int rcsWireVersion = 0;
+    private volatile List<String> rcsFeatures = Collections.emptyList();
 
-    public Sender(final ReportIxi reportIxi, final DatagramSocket socket) {
+    public Sender(final ReportIxi reportIxi, final DatagramChannel channel) {
         this.reportIxi = reportIxi;
-        this.socket = socket;
+        this.channel = channel;
     }
 
     public void start() {
+        outboundQueue.start();
 
         // Metadata sender
-        addTimerTask(new TimerTask() {
+        scheduler.schedule("Metadata", new Runnable() {
             @Override
             public void run() {
                 try {
                     if (!reportIxi.isRunning()) return;
 
                     for (final Neighbor neighbor : reportIxi.getNeighbors()) {
-                        final MetadataPayload metadataPayload =
-                                new MetadataPayload(reportIxi.getMetadata().getUuid(), Constants.VERSION);
+                        final MetadataPayload metadataPayload = new MetadataPayload(
+                                reportIxi.getMetadata().getUuid(), Constants.VERSION, BinaryCodec.VERSION,
+                                Features.SUPPORTED);
 
-                        send(metadataPayload, neighbor.getAddress().getReportSocketAddress());
-                        LOGGER.debug(String.format(
-                                "Sent MetadataPayload to neighbor [%s]: %s",
-                                neighbor.getAddress().getReportSocketAddress().toString(),
-                                Payload.serialize(metadataPayload))
-                        );
+                        send(metadataPayload, neighbor);
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug(String.format(
+                                    "Sent MetadataPayload to neighbor [%s]: %s",
+                                    reportSocketAddress(neighbor).toString(),
+                                    Payload.serialize(metadataPayload))
+                            );
+                        }
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
                     LOGGER.warn("Metadata Sender thread failed unexpectedly", e);
                 }
             }
-        }, 0, TimeUnit.MINUTES.toMillis(1));
+        }, METADATA_OFFSET, METADATA_INTERVAL, METADATA_JITTER);
 
         // Status sender
-        addTimerTask(new TimerTask() {
+        final long statusInterval = statusInterval();
+        final String phaseKey = phaseKey();
+        statusTask = scheduler.schedule("Status", new Runnable() {
             @Override
             public void run() {
                 try {
                     if (!reportIxi.isRunning()) return;
 
                     reportIxi.syncIct();
+                    adaptStatusInterval();
 
-                    final List<NeighborPayload> neighborPayloads = new LinkedList<>();
-
-                    for (Neighbor neighbor : reportIxi.getNeighbors()) {
-
-                        neighborPayloads.add(new NeighborPayload(
-                                neighbor.getStats().getTimestamp(),
-                                neighbor.getUuid(),
-                                neighbor.getStats().getAllTx(),
-                                neighbor.getStats().getNewTx(),
-                                neighbor.getStats().getIgnoredTx(),
-                                neighbor.getStats().getInvalidTx(),
-                                neighbor.getStats().getRequestedTx()
-                        ));
+                    final List<Object> fingerprint = statusFingerprint();
+                    if (!statusChangeDetector.shouldReport(fingerprint, System.currentTimeMillis())) {
+                        LOGGER.debug("Skipped status report, nothing changed since the last one");
+                        return;
                     }
 
-                    final StatusPayload statusPayload = new StatusPayload(
-                            reportIxi.getMetadata().getUuid(),
-                            reportIxi.getReportIxiContext().getName(),
-                            reportIxi.getReportIxiContext().getIctVersion(),
-                            Constants.VERSION,
-                            reportIxi.getReportIxiContext().getIctRoundDuration(),
-                            neighborPayloads,
-                            CPUMonitor.getSystemLoadAverage());
+                    final boolean statusDelta = Features.isEnabled(rcsFeatures, Features.STATUS_DELTA);
+                    if (statusDelta || Features.isEnabled(rcsFeatures, Features.BATCH)
+                            || Features.isEnabled(rcsFeatures, Features.RELIABLE)) {
+                        final Payload statusReport = statusDelta
+                                ? statusDeltaTracker.nextReport(createStatusPayload())
+                                : createStatusPayload();
+                        pendingStatus = new PendingStatus(statusReport, fingerprint);
+                        queueForRcs(statusReport);
 
-                    send(statusPayload, Constants.RCS_HOST, Constants.RCS_PORT);
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug(String.format(
+                                    "Queued %s for RCS: %s",
+                                    statusReport.getClass().getSimpleName(),
+                                    Payload.serialize(statusReport))
+                            );
+                        }
+                        return;
+                    }
 
-                    LOGGER.debug(String.format(
-                            "Sent StatusPayload to RCS: %s",
-                            Payload.serialize(statusPayload))
-                    );
+                    // Encoded by the writer, straight from the neighbor model
+                    pendingStatus = new PendingStatus(null, fingerprint);
+                    outboundQueue.offer(new OutboundQueue.Outbound(StatusPayload.class, null, rcsAddress(),
+                            rcsWireVersion, Features.isEnabled(rcsFeatures, Features.FRAGMENT)));
                 } catch (Exception e) {
                     e.printStackTrace();
                     LOGGER.warn("Status Sender thread failed unexpectedly", e);
                 }
             }
-        }, 0, TimeUnit.MINUTES.toMillis(1));
+        }, statusOffset(phaseKey, statusInterval), statusInterval, statusInterval / STATUS_JITTER_DIVISOR);
 
         // Ping sender
-        addTimerTask(new TimerTask() {
+        scheduler.schedule("Ping", new Runnable() {
             @Override
             public void run() {
                 try {
@@ -123,36 +204,150 @@ public class Sender {
 
                     LOGGER.debug(String.format(
                             "Broadcasted PingPayload to Ict network: %s",
-                            Payload.serialize(pingPayload))
+                            json)
                     );
 
                     // Send to RCS
                     final SubmittedPingPayload submittedPingPayload =
                             new SubmittedPingPayload(reportIxi.getMetadata().getUuid(), pingPayload);
 
-                    send(submittedPingPayload, Constants.RCS_HOST, Constants.RCS_PORT);
+                    queueForRcs(submittedPingPayload);
 
-                    LOGGER.debug(String.format(
-                            "Sent SubmittedPingPayload to RCS: %s",
-                            Payload.serialize(submittedPingPayload))
-                    );
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug(String.format(
+                                "Sent SubmittedPingPayload to RCS: %s",
+                                Payload.serialize(submittedPingPayload))
+                        );
+                    }
                 } catch (Exception e) {
                     e.printStackTrace();
                     LOGGER.warn("Ping Sender thread failed unexpectedly", e);
                 }
             }
-        }, 0, TimeUnit.MINUTES.toMillis(5));
+        }, pingOffset(phaseKey), PING_INTERVAL, PING_JITTER);
+
+        // Batch flusher, bounds the time a payload waits for its envelope
+        timerScheduler.schedule("Batch flusher", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rcsBatcher.flush();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    LOGGER.warn("Batch flusher thread failed unexpectedly", e);
+                }
+            }
+        }, BATCH_FLUSH_INTERVAL, BATCH_FLUSH_INTERVAL, 0);
+
+        // Retransmitter of unacknowledged RCS payloads
+        timerScheduler.schedule("Retransmitter", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rcsDeliveryWindow.retransmit(System.currentTimeMillis());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    LOGGER.warn("Retransmitter thread failed unexpectedly", e);
+                }
+            }
+        }, RETRANSMIT_INTERVAL, RETRANSMIT_INTERVAL, 0);
+
+        scheduler.start();
+        timerScheduler.start();
     }
 
     public void requestUuid() {
-        final RequestUuidPayload requestUuidPayload =
-                new RequestUuidPayload(reportIxi.getMetadata().getUuid(), reportIxi.getReportIxiContext().getExternalReportPort());
-        send(requestUuidPayload, Constants.RCS_HOST, Constants.RCS_PORT);
+        final RequestUuidPayload requestUuidPayload = new RequestUuidPayload(reportIxi.getMetadata().getUuid(),
+                reportIxi.getReportIxiContext().getExternalReportPort(), BinaryCodec.VERSION, Features.SUPPORTED);
+        sendToRcs(requestUuidPayload);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format(
+                    "Sent RequestUuidPayload to RCS: %s",
+                    Payload.serialize(requestUuidPayload))
+            );
+        }
+    }
+
+    /**
+     * Nodes restarted together would otherwise report and ping in lockstep. The uuid keeps a node's
+     * phase stable across restarts, before the RCS assigned one any random key will do.
+     */
+    private String phaseKey() {
+        final String uuid = reportIxi.getMetadata().getUuid();
+        return !uuid.isEmpty() ? uuid : randomStringGenerator.nextString();
+    }
+
+    static long statusOffset(final String phaseKey, final long statusInterval) {
+        return STATUS_OFFSET + TaskScheduler.phaseOf("status:" + phaseKey, statusInterval);
+    }
+
+    static long pingOffset(final String phaseKey) {
+        return PING_OFFSET + TaskScheduler.phaseOf("ping:" + phaseKey, PING_INTERVAL);
+    }
+
+    /**
+     * @return one status report per Ict round, within MIN_STATUS_INTERVAL and MAX_STATUS_INTERVAL
+     */
+    private long statusInterval() {
+        final long roundDuration = reportIxi.getReportIxiContext().getIctRoundDuration();
+        return Math.max(MIN_STATUS_INTERVAL, Math.min(MAX_STATUS_INTERVAL, roundDuration));
+    }
 
-        LOGGER.debug(String.format(
-                "Sent RequestUuidPayload to RCS: %s",
-                Payload.serialize(requestUuidPayload))
-        );
+    private void adaptStatusInterval() {
+        final long statusInterval = statusInterval();
+        if (statusTask != null && statusTask.getPeriod() != statusInterval) {
+            statusTask.setPeriod(statusInterval);
+            statusTask.setJitter(statusInterval / STATUS_JITTER_DIVISOR);
+            LOGGER.info(String.format("Status interval adapted to the Ict round duration: %dms", statusInterval));
+        }
+    }
+
+    /**
+     * @return a value that changes whenever the content of the status report would
+     */
+    private List<Object> statusFingerprint() {
+        final List<Object> fingerprint = new ArrayList<>();
+        fingerprint.add(reportIxi.getReportIxiContext().getName());
+        fingerprint.add(reportIxi.getReportIxiContext().getIctVersion());
+        fingerprint.add(reportIxi.getReportIxiContext().getIctRoundDuration());
+        for (final Neighbor neighbor : reportIxi.getNeighbors()) {
+            final Stats stats = neighbor.getStats();
+            fingerprint.add(neighbor.getUuid());
+            fingerprint.add(stats.getTimestamp());
+            fingerprint.add(stats.getAllTx());
+            fingerprint.add(stats.getNewTx());
+            fingerprint.add(stats.getIgnoredTx());
+            fingerprint.add(stats.getInvalidTx());
+            fingerprint.add(stats.getRequestedTx());
+        }
+        return fingerprint;
+    }
+
+    private StatusPayload createStatusPayload() {
+        final List<NeighborPayload> neighborPayloads = new LinkedList<>();
+
+        for (Neighbor neighbor : reportIxi.getNeighbors()) {
+
+            neighborPayloads.add(new NeighborPayload(
+                    neighbor.getStats().getTimestamp(),
+                    neighbor.getUuid(),
+                    neighbor.getStats().getAllTx(),
+                    neighbor.getStats().getNewTx(),
+                    neighbor.getStats().getIgnoredTx(),
+                    neighbor.getStats().getInvalidTx(),
+                    neighbor.getStats().getRequestedTx()
+            ));
+        }
+
+        return new StatusPayload(
+                reportIxi.getMetadata().getUuid(),
+                reportIxi.getReportIxiContext().getName(),
+                reportIxi.getReportIxiContext().getIctVersion(),
+                Constants.VERSION,
+                reportIxi.getReportIxiContext().getIctRoundDuration(),
+                neighborPayloads,
+                CPUMonitor.getSystemLoadAverage());
     }
 
     public void send(final Payload payload, final InetAddress address, final int port) {
@@ -160,31 +355,257 @@ public class Sender {
     }
 
     public void send(final Payload payload, String host, final int port) {
-        send(payload, new InetSocketAddress(host, port));
+        send(payload, reportIxi.getAddressResolver().resolve(host, port));
     }
 
-    public synchronized void send(final Payload payload, final InetSocketAddress address) {
+    public void send(final Payload payload, final InetSocketAddress address) {
+        send(payload, address, 0);
+    }
+
+    public void send(final Payload payload, final Neighbor neighbor) {
+        send(payload, reportSocketAddress(neighbor), neighbor.getWireVersion(),
+                Features.isEnabled(neighbor.getFeatures(), Features.FRAGMENT));
+    }
+
+    /**
+     * Sends a payload to the RCS, through the delivery window if the RCS opted in to reliable delivery.
+     */
+    public void sendToRcs(final Payload payload) {
+        if (Features.isEnabled(rcsFeatures, Features.RELIABLE)) {
+            rcsDeliveryWindow.send(payload, System.currentTimeMillis());
+        } else {
+            send(payload, rcsAddress(), rcsWireVersion, Features.isEnabled(rcsFeatures, Features.FRAGMENT));
+        }
+    }
+
+    /**
+     * Sends a payload to the RCS, coalesced with other payloads into an envelope if the RCS opted in
+     * to batching. Queued payloads go out within BATCH_FLUSH_INTERVAL.
+     */
+    public void queueForRcs(final Payload payload) {
+        if (Features.isEnabled(rcsFeatures, Features.BATCH)) {
+            rcsBatcher.add(payload);
+        } else {
+            sendToRcs(payload);
+        }
+    }
+
+    public void send(final Payload payload, final InetSocketAddress address, final int wireVersion) {
+        send(payload, address, wireVersion, false);
+    }
+
+    /**
+     * Queues the payload for the writer thread, waiting only if the queue is full and the payload's
+     * policy is to block.
+     *
+     * @param fragment whether the receiver reassembles fragments, datagrams too long for its receive
+     *                 buffer are only deliverable if it does
+     */
+    public void send(final Payload payload, final InetSocketAddress address, final int wireVersion,
+                     final boolean fragment) {
+        outboundQueue.offer(new OutboundQueue.Outbound(payload.getClass(), payload, address, wireVersion, fragment));
+    }
+
+    public OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    private void write(final OutboundQueue.Outbound outbound) {
+        final ByteBuffer datagram;
+        if (outbound.getPayload() != null) {
+            datagram = ByteBuffer.wrap(Payload.encode(outbound.getPayload(), outbound.getWireVersion()));
+        } else {
+            datagram = encodeStatus(outbound.getWireVersion());
+            if (datagram == null) {
+                return;
+            }
+        }
+        if (write(datagram, outbound.getAddress(), outbound.isFragment())) {
+            markStatusWritten(outbound.getPayload());
+        }
+    }
+
+    /**
+     * Tells the change detector the pending status report went out, if the written payload is it
+     * or encloses it. Null stands for the report encoded straight from the neighbor model.
+     */
+    private void markStatusWritten(final Payload written) {
+        final PendingStatus pending = pendingStatus;
+        if (pending != null && (written == null ? pending.report == null : encloses(written, pending.report))) {
+            statusChangeDetector.reported(pending.fingerprint, System.currentTimeMillis());
+            pendingStatus = null;
+        }
+    }
+
+    private static boolean encloses(final Payload payload, final Payload report) {
+        if (payload == report) {
+            return true;
+        }
+        if (payload instanceof SequencedPayload) {
+            return encloses(((SequencedPayload) payload).getPayload(), report);
+        }
+        if (payload instanceof EnvelopePayload) {
+            for (final Payload enclosed : ((EnvelopePayload) payload).getPayloads()) {
+                if (encloses(enclosed, report)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the encoded status report, or null if it's too long to be sent at all
+     */
+    private ByteBuffer encodeStatus(final int wireVersion) {
+        final ByteBuffer statusDatagram;
         try {
-            final byte[] messageByteArray = Payload.serialize(payload).getBytes();
-            if (socket != null && !socket.isClosed()) socket.send(new DatagramPacket(messageByteArray, messageByteArray.length, address));
+            statusDatagram = statusEncoder.encode(
+                    wireVersion,
+                    reportIxi.getMetadata().getUuid(),
+                    reportIxi.getReportIxiContext().getName(),
+                    reportIxi.getReportIxiContext().getIctVersion(),
+                    Constants.VERSION,
+                    reportIxi.getReportIxiContext().getIctRoundDuration(),
+                    reportIxi.getNeighbors(),
+                    CPUMonitor.getSystemLoadAverage());
+        } catch (final BufferOverflowException e) {
+            LOGGER.warn(String.format("Dropped StatusPayload with %d neighbors, too long even for fragmentation",
+                    reportIxi.getNeighbors().size()));
+            return null;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format(
+                    "Sending StatusPayload to RCS: %s",
+                    wireVersion > 0 ? statusDatagram.remaining() + " bytes binary"
+                            : new String(statusDatagram.array(), 0, statusDatagram.limit(),
+                            StandardCharsets.UTF_8))
+            );
+        }
+        return statusDatagram;
+    }
+
+    /**
+     * The channel is non-blocking, a datagram that doesn't fit the socket's send buffer is dropped
+     * like the network would.
+     */
+    private boolean write(final ByteBuffer datagram, final InetSocketAddress address, final boolean fragment) {
+        if (datagram.remaining() <= Fragments.MAX_DATAGRAM_LENGTH) {
+            return sendDatagram(datagram, address);
+        }
+        if (!fragment) {
+            LOGGER.warn(String.format("Sending %d bytes to %s, which doesn't reassemble fragments, the receiver " +
+                    "will likely truncate the datagram", datagram.remaining(), address));
+            return sendDatagram(datagram, address);
+        }
+        final int count = Fragments.countFor(datagram.remaining());
+        if (count > Fragments.MAX_COUNT) {
+            LOGGER.warn(String.format("Dropped %d bytes to %s, too long even for fragmentation",
+                    datagram.remaining(), address));
+            return false;
+        }
+        final int messageId = nextMessageId++;
+        boolean sent = true;
+        for (int index = 0; index < count; index++) {
+            fragmentBuffer.clear();
+            Fragments.write(fragmentBuffer, messageId, index, count, datagram);
+            fragmentBuffer.flip();
+            sent &= sendDatagram(fragmentBuffer, address);
+        }
+        return sent;
+    }
+
+    /**
+     * @return whether the datagram was handed to the socket
+     */
+    private boolean sendDatagram(final ByteBuffer datagram, final InetSocketAddress address) {
+        try {
+            if (channel == null || !channel.isOpen()) {
+                return false;
+            }
+            if (channel.send(datagram, address) == 0) {
+                LOGGER.debug("Send buffer full, dropped datagram to " + address);
+                return false;
+            }
+            return true;
         } catch (final IOException | RuntimeException e) {
             e.printStackTrace();
+            return false;
         }
     }
 
+    private InetSocketAddress rcsAddress() {
+        return reportIxi.getAddressResolver().resolve(Constants.RCS_HOST, Constants.RCS_PORT);
+    }
+
+    private InetSocketAddress reportSocketAddress(final Neighbor neighbor) {
+        final Address address = neighbor.getAddress();
+        final String host = !address.getHostname().isEmpty() ? address.getHostname() : address.getIp();
+        return reportIxi.getAddressResolver().resolve(host, address.getReportPort());
+    }
+
+    /**
+     * @param rcsWireVersion the wire format version the RCS opted in to, 0 keeps RCS traffic on JSON
+     */
+    public void setRcsWireVersion(final int rcsWireVersion) {
+        this.rcsWireVersion = rcsWireVersion;
+    }
+
+    /**
+     * @param rcsFeatures the optional features the RCS opted in to, null if it didn't announce any
+     */
+    public void setRcsFeatures(final List<String> rcsFeatures) {
+        this.rcsFeatures = rcsFeatures != null ? rcsFeatures : Collections.<String>emptyList();
+        statusDeltaTracker.reset();
+        statusChangeDetector.reset();
+        rcsDeliveryWindow.reset();
+        rcsBatcher.flush();
+    }
+
+    public void acknowledgeStatus(final int sequence) {
+        statusDeltaTracker.acknowledge(sequence);
+    }
+
+    public void acknowledgeDelivery(final int sequence) {
+        rcsDeliveryWindow.acknowledge(sequence, System.currentTimeMillis());
+    }
+
+    public StatusChangeDetector getStatusChangeDetector() {
+        return statusChangeDetector;
+    }
+
+    public DeliveryWindow getRcsDeliveryWindow() {
+        return rcsDeliveryWindow;
+    }
+
+    /**
+     * @return the scheduler of the periodic tasks, which keeps execution time metrics per task
+     */
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return the scheduler of the batch flusher and the retransmitter
+     */
+    public TaskScheduler getTimerScheduler() {
+        return timerScheduler;
+    }
+
     public void shutDown() {
-        for (final Timer timer : timers) {
-            if (timer != null) {
-                timer.cancel();
-                timer.purge();
-            }
-        }
-        timers.clear();
+        outboundQueue.shutDown();
+        scheduler.shutDown();
+        timerScheduler.shutDown();
     }
 
-    private void addTimerTask(final TimerTask timerTask, final long delay, final long period) {
-        final Timer timer = new Timer();
-        timer.schedule(timerTask, delay, period);
-        timers.add(timer);
+    private static final class PendingStatus {
+        private final Payload report;
+        private final Object fingerprint;
+
+        private PendingStatus(final Payload report, final Object fingerprint) {
+            this.report = report;
+            this.fingerprint = fingerprint;
+        }
     }
 }
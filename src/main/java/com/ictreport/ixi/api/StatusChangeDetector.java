@@ -0,0 +1,53 @@
+package com.ictreport.ixi.api;
+
+import java.util.Objects;
+
+/**
+ * Decides whether a status report is worth sending. A report is skipped if its fingerprint equals
+ * the one of the last report sent, unless nothing was sent for maxSilence, so the RCS still gets a
+ * heartbeat from nodes whose stats don't move. A report only counts as sent once the sender calls
+ * reported(), after it was actually written.
+ */
+public class StatusChangeDetector {
+
+    private final long maxSilence;
+    private Object lastFingerprint = null;
+    private long lastReportedAt = 0;
+    private long skipped = 0;
+
+    public StatusChangeDetector(final long maxSilence) {
+        this.maxSilence = maxSilence;
+    }
+
+    /**
+     * @param fingerprint equal for reports with the same content
+     * @return true if the report should be sent
+     */
+    public synchronized boolean shouldReport(final Object fingerprint, final long now) {
+        if (lastFingerprint != null && Objects.equals(lastFingerprint, fingerprint)
+                && now - lastReportedAt < maxSilence) {
+            skipped++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers the report as the last one sent.
+     */
+    public synchronized void reported(final Object fingerprint, final long now) {
+        lastFingerprint = fingerprint;
+        lastReportedAt = now;
+    }
+
+    /**
+     * Makes the next report go out regardless of its content.
+     */
+    public synchronized void reset() {
+        lastFingerprint = null;
+    }
+
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+}
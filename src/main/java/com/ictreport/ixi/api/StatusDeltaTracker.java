@@ -0,0 +1,111 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.NeighborPayload;
+import com.ictreport.ixi.exchange.Payload;
+import com.ictreport.ixi.exchange.StatusDeltaPayload;
+import com.ictreport.ixi.exchange.StatusPayload;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Decides whether a status report is shipped as a full StatusPayload (keyframe) or as a
+ * StatusDeltaPayload against the last keyframe the RCS acknowledged.
+ *
+ * Deltas are always relative to the acknowledged keyframe rather than to the previous delta,
+ * so a lost delta never corrupts the state the RCS reconstructs.
+ */
+public class StatusDeltaTracker {
+
+    private final int keyframeInterval;
+    private int sequence = 0;
+    private int reportsSinceKeyframe = 0;
+    private StatusPayload pendingKeyframe = null;
+    private StatusPayload acknowledgedKeyframe = null;
+
+    /**
+     * @param keyframeInterval maximum number of deltas shipped between two keyframes
+     */
+    public StatusDeltaTracker(final int keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    public synchronized Payload nextReport(final StatusPayload status) {
+        if (acknowledgedKeyframe == null
+                || reportsSinceKeyframe >= keyframeInterval
+                || !Objects.equals(acknowledgedKeyframe.getUuid(), status.getUuid())
+                || !hasUniqueNeighborUuids(status)) {
+            return keyframe(status);
+        }
+        reportsSinceKeyframe++;
+        return delta(acknowledgedKeyframe, status);
+    }
+
+    public synchronized void acknowledge(final int sequence) {
+        if (pendingKeyframe != null && pendingKeyframe.getSequence() == sequence) {
+            acknowledgedKeyframe = pendingKeyframe;
+            pendingKeyframe = null;
+        }
+    }
+
+    public synchronized void reset() {
+        reportsSinceKeyframe = 0;
+        pendingKeyframe = null;
+        acknowledgedKeyframe = null;
+    }
+
+    private StatusPayload keyframe(final StatusPayload status) {
+        final StatusPayload keyframe = new StatusPayload(status.getUuid(), status.getName(), status.getIctVersion(),
+                status.getReportIxiVersion(), status.getIctRoundDuration(), status.getNeighbors(),
+                status.getSystemLoadAverage(), ++sequence);
+        pendingKeyframe = keyframe;
+        reportsSinceKeyframe = 0;
+        return keyframe;
+    }
+
+    private static StatusDeltaPayload delta(final StatusPayload base, final StatusPayload status) {
+        final Map<String, NeighborPayload> baseNeighbors = new HashMap<>();
+        for (final NeighborPayload neighbor : base.getNeighbors()) {
+            baseNeighbors.put(neighbor.getUuid(), neighbor);
+        }
+
+        final List<NeighborPayload> changedNeighbors = new ArrayList<>();
+        for (final NeighborPayload neighbor : status.getNeighbors()) {
+            if (!neighbor.equals(baseNeighbors.remove(neighbor.getUuid()))) {
+                changedNeighbors.add(neighbor);
+            }
+        }
+        final List<String> removedNeighbors = new ArrayList<>(baseNeighbors.keySet());
+
+        return new StatusDeltaPayload(
+                status.getUuid(),
+                base.getSequence(),
+                changed(base.getName(), status.getName()),
+                changed(base.getIctVersion(), status.getIctVersion()),
+                changed(base.getReportIxiVersion(), status.getReportIxiVersion()),
+                changed(base.getIctRoundDuration(), status.getIctRoundDuration()),
+                changedNeighbors,
+                removedNeighbors,
+                changed(base.getSystemLoadAverage(), status.getSystemLoadAverage()));
+    }
+
+    private static <T> T changed(final T base, final T current) {
+        return Objects.equals(base, current) ? null : current;
+    }
+
+    private static boolean hasUniqueNeighborUuids(final StatusPayload status) {
+        // Neighbors are matched by uuid, neighbors we haven't got a uuid from yet can't be diffed.
+        final Set<String> uuids = new HashSet<>();
+        for (final NeighborPayload neighbor : status.getNeighbors()) {
+            if (neighbor.getUuid().isEmpty() || !uuids.add(neighbor.getUuid())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
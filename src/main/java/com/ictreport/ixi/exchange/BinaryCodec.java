@@ -0,0 +1,584 @@
+package com.ictreport.ixi.exchange;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the exchange payloads.
+ *
+ * Every frame starts with a fixed header: magic byte, wire format version, type tag and the
+ * unsigned 16 bit length of the body. JSON datagrams always start with '{', so the magic byte
+ * is enough to tell both encodings apart on the receiving side.
+ */
+public class BinaryCodec {
+
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final int  VERSION = 1;
+    public static final int  HEADER_LENGTH = 5;
+    public static final int  MAX_BODY_LENGTH = 0xFFFF;
+
+    private static final int  NULL_LENGTH = 0xFFFF;
+    private static final int  INITIAL_BUFFER_SIZE = 512;
+
+    // Type tags
+    private static final byte TYPE_METADATA = 1;
+    private static final byte TYPE_PING = 2;
+    static final byte TYPE_STATUS = 3;
+    private static final byte TYPE_RECEIVED_PING = 4;
+    private static final byte TYPE_SUBMITTED_PING = 5;
+    private static final byte TYPE_REQUEST_UUID = 6;
+    private static final byte TYPE_UUID = 7;
+    private static final byte TYPE_NEIGHBOR = 8;
+    private static final byte TYPE_STATUS_DELTA = 9;
+    private static final byte TYPE_STATUS_ACK = 10;
+    private static final byte TYPE_ENVELOPE = 11;
+    static final byte TYPE_FRAGMENT = 12;
+    private static final byte TYPE_SEQUENCED = 13;
+    private static final byte TYPE_DELIVERY_ACK = 14;
+    private static final byte MAX_TYPE = TYPE_DELIVERY_ACK;
+
+    public static boolean isBinary(final byte[] data, final int offset, final int length) {
+        return length > 0 && data[offset] == MAGIC;
+    }
+
+    /**
+     * Checks the frame header without decoding the body: magic, a supported version, a known type
+     * and a body length that accounts for exactly the remaining bytes.
+     */
+    public static boolean isWellFormedFrame(final ByteBuffer buffer) {
+        final int position = buffer.position();
+        if (buffer.remaining() < HEADER_LENGTH || buffer.get(position) != MAGIC) {
+            return false;
+        }
+        final int version = buffer.get(position + 1) & 0xFF;
+        final int type = buffer.get(position + 2);
+        final int bodyLength = buffer.getShort(position + 3) & 0xFFFF;
+        return version >= 1 && version <= VERSION
+                && type >= TYPE_METADATA && type <= MAX_TYPE
+                && HEADER_LENGTH + bodyLength == buffer.remaining();
+    }
+
+    /**
+     * @param peerVersion the wire format version advertised by a peer, null if it didn't advertise one
+     * @return the highest wire format version both sides understand, 0 meaning JSON
+     */
+    public static int negotiate(final Integer peerVersion) {
+        if (peerVersion == null || peerVersion < 1) {
+            return 0;
+        }
+        return Math.min(peerVersion, VERSION);
+    }
+
+    public static byte[] encode(final Payload payload) {
+        int capacity = INITIAL_BUFFER_SIZE;
+        while (true) {
+            final ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                encode(payload, buffer);
+            } catch (final BufferOverflowException e) {
+                if (capacity >= HEADER_LENGTH + MAX_BODY_LENGTH) {
+                    throw new IllegalArgumentException("Payload exceeds the maximum binary frame length");
+                }
+                capacity = Math.min(capacity * 2, HEADER_LENGTH + MAX_BODY_LENGTH);
+                continue;
+            }
+            buffer.flip();
+            final byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            return data;
+        }
+    }
+
+    /**
+     * @return the length encode() would produce, computed without writing anything
+     */
+    public static int encodedLength(final Payload payload) {
+        typeOf(payload);
+        return HEADER_LENGTH + bodyLength(payload);
+    }
+
+    /**
+     * Writes a complete frame into the buffer, starting at its current position.
+     */
+    public static void encode(final Payload payload, final ByteBuffer buffer) {
+        final int start = beginFrame(buffer, typeOf(payload));
+        writeBody(payload, buffer);
+        endFrame(buffer, start);
+    }
+
+    /**
+     * Writes a frame header with a placeholder body length.
+     *
+     * @return the position of the frame, to be passed to endFrame once the body is written
+     */
+    static int beginFrame(final ByteBuffer buffer, final byte type) {
+        final int start = buffer.position();
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put(type);
+        buffer.putShort((short) 0);
+        return start;
+    }
+
+    static void endFrame(final ByteBuffer buffer, final int start) {
+        final int bodyLength = buffer.position() - start - HEADER_LENGTH;
+        if (bodyLength > MAX_BODY_LENGTH) {
+            throw new BufferOverflowException();
+        }
+        buffer.putShort(start + 3, (short) bodyLength);
+    }
+
+    public static Payload decode(final byte[] data, final int offset, final int length) {
+        return decode(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Reads one frame from the buffer, starting at its current position.
+     */
+    public static Payload decode(final ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Truncated binary frame header");
+        }
+        if (buffer.get() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary frame");
+        }
+        final int version = buffer.get() & 0xFF;
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported wire format version: " + version);
+        }
+        final byte type = buffer.get();
+        final int bodyLength = buffer.getShort() & 0xFFFF;
+        if (bodyLength > buffer.remaining()) {
+            throw new IllegalArgumentException("Truncated binary frame body");
+        }
+
+        final int end = buffer.position() + bodyLength;
+        final ByteBuffer body = buffer.duplicate();
+        body.limit(end);
+        final Payload payload = readBody(type, body);
+        if (body.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing bytes in binary frame");
+        }
+        buffer.position(end);
+        return payload;
+    }
+
+    private static byte typeOf(final Payload payload) {
+        if (payload instanceof MetadataPayload) return TYPE_METADATA;
+        if (payload instanceof PingPayload) return TYPE_PING;
+        if (payload instanceof StatusPayload) return TYPE_STATUS;
+        if (payload instanceof ReceivedPingPayload) return TYPE_RECEIVED_PING;
+        if (payload instanceof SubmittedPingPayload) return TYPE_SUBMITTED_PING;
+        if (payload instanceof RequestUuidPayload) return TYPE_REQUEST_UUID;
+        if (payload instanceof UuidPayload) return TYPE_UUID;
+        if (payload instanceof NeighborPayload) return TYPE_NEIGHBOR;
+        if (payload instanceof StatusDeltaPayload) return TYPE_STATUS_DELTA;
+        if (payload instanceof StatusAckPayload) return TYPE_STATUS_ACK;
+        if (payload instanceof EnvelopePayload) return TYPE_ENVELOPE;
+        if (payload instanceof SequencedPayload) return TYPE_SEQUENCED;
+        if (payload instanceof DeliveryAckPayload) return TYPE_DELIVERY_ACK;
+        throw new IllegalArgumentException("No binary encoding for " + payload.getClass().getSimpleName());
+    }
+
+    private static void writeBody(final Payload payload, final ByteBuffer buffer) {
+        if (payload instanceof MetadataPayload) {
+            final MetadataPayload metadataPayload = (MetadataPayload) payload;
+            writeString(buffer, metadataPayload.getUuid());
+            writeString(buffer, metadataPayload.getReportIxiVersion());
+            writeInteger(buffer, metadataPayload.getWireVersion());
+            writeStrings(buffer, metadataPayload.getFeatures());
+        } else if (payload instanceof PingPayload) {
+            writeString(buffer, ((PingPayload) payload).getMessage());
+        } else if (payload instanceof StatusPayload) {
+            final StatusPayload statusPayload = (StatusPayload) payload;
+            writeString(buffer, statusPayload.getUuid());
+            writeString(buffer, statusPayload.getName());
+            writeString(buffer, statusPayload.getIctVersion());
+            writeString(buffer, statusPayload.getReportIxiVersion());
+            buffer.putInt(statusPayload.getIctRoundDuration());
+            writeNeighbors(buffer, statusPayload.getNeighbors());
+            buffer.putInt(statusPayload.getSystemLoadAverage());
+            writeNullableInteger(buffer, statusPayload.getSequence());
+        } else if (payload instanceof ReceivedPingPayload) {
+            final ReceivedPingPayload receivedPingPayload = (ReceivedPingPayload) payload;
+            writeString(buffer, receivedPingPayload.getUuid());
+            writePing(buffer, receivedPingPayload.getPingPayload());
+        } else if (payload instanceof SubmittedPingPayload) {
+            final SubmittedPingPayload submittedPingPayload = (SubmittedPingPayload) payload;
+            writeString(buffer, submittedPingPayload.getUuid());
+            writePing(buffer, submittedPingPayload.getPingPayload());
+        } else if (payload instanceof RequestUuidPayload) {
+            final RequestUuidPayload requestUuidPayload = (RequestUuidPayload) payload;
+            writeString(buffer, requestUuidPayload.getUuid());
+            buffer.putInt(requestUuidPayload.getPort());
+            writeInteger(buffer, requestUuidPayload.getWireVersion());
+            writeStrings(buffer, requestUuidPayload.getFeatures());
+        } else if (payload instanceof UuidPayload) {
+            final UuidPayload uuidPayload = (UuidPayload) payload;
+            writeString(buffer, uuidPayload.getUuid());
+            writeInteger(buffer, uuidPayload.getWireVersion());
+            writeStrings(buffer, uuidPayload.getFeatures());
+        } else if (payload instanceof NeighborPayload) {
+            writeNeighbor(buffer, (NeighborPayload) payload);
+        } else if (payload instanceof StatusDeltaPayload) {
+            final StatusDeltaPayload statusDeltaPayload = (StatusDeltaPayload) payload;
+            writeString(buffer, statusDeltaPayload.getUuid());
+            buffer.putInt(statusDeltaPayload.getKeyframe());
+            writeString(buffer, statusDeltaPayload.getName());
+            writeString(buffer, statusDeltaPayload.getIctVersion());
+            writeString(buffer, statusDeltaPayload.getReportIxiVersion());
+            writeNullableInteger(buffer, statusDeltaPayload.getIctRoundDuration());
+            writeNeighbors(buffer, statusDeltaPayload.getNeighbors());
+            writeStrings(buffer, statusDeltaPayload.getRemovedNeighbors());
+            writeNullableInteger(buffer, statusDeltaPayload.getSystemLoadAverage());
+        } else if (payload instanceof StatusAckPayload) {
+            buffer.putInt(((StatusAckPayload) payload).getSequence());
+        } else if (payload instanceof EnvelopePayload) {
+            // Enclosed payloads are complete frames of their own.
+            final List<Payload> payloads = ((EnvelopePayload) payload).getPayloads();
+            buffer.putShort((short) payloads.size());
+            for (final Payload enclosed : payloads) {
+                encode(enclosed, buffer);
+            }
+        } else if (payload instanceof SequencedPayload) {
+            final SequencedPayload sequencedPayload = (SequencedPayload) payload;
+            buffer.putInt(sequencedPayload.getSequence());
+            encode(sequencedPayload.getPayload(), buffer);
+        } else if (payload instanceof DeliveryAckPayload) {
+            buffer.putInt(((DeliveryAckPayload) payload).getSequence());
+        }
+    }
+
+    // Mirrors writeBody, the two have to be changed together
+    private static int bodyLength(final Payload payload) {
+        if (payload instanceof MetadataPayload) {
+            final MetadataPayload metadataPayload = (MetadataPayload) payload;
+            return stringLength(metadataPayload.getUuid()) + stringLength(metadataPayload.getReportIxiVersion())
+                    + 4 + stringsLength(metadataPayload.getFeatures());
+        } else if (payload instanceof PingPayload) {
+            return stringLength(((PingPayload) payload).getMessage());
+        } else if (payload instanceof StatusPayload) {
+            final StatusPayload statusPayload = (StatusPayload) payload;
+            return stringLength(statusPayload.getUuid()) + stringLength(statusPayload.getName())
+                    + stringLength(statusPayload.getIctVersion()) + stringLength(statusPayload.getReportIxiVersion())
+                    + 4 + neighborsLength(statusPayload.getNeighbors()) + 4
+                    + nullableIntegerLength(statusPayload.getSequence());
+        } else if (payload instanceof ReceivedPingPayload) {
+            final ReceivedPingPayload receivedPingPayload = (ReceivedPingPayload) payload;
+            return stringLength(receivedPingPayload.getUuid()) + pingLength(receivedPingPayload.getPingPayload());
+        } else if (payload instanceof SubmittedPingPayload) {
+            final SubmittedPingPayload submittedPingPayload = (SubmittedPingPayload) payload;
+            return stringLength(submittedPingPayload.getUuid()) + pingLength(submittedPingPayload.getPingPayload());
+        } else if (payload instanceof RequestUuidPayload) {
+            final RequestUuidPayload requestUuidPayload = (RequestUuidPayload) payload;
+            return stringLength(requestUuidPayload.getUuid()) + 4 + 4
+                    + stringsLength(requestUuidPayload.getFeatures());
+        } else if (payload instanceof UuidPayload) {
+            final UuidPayload uuidPayload = (UuidPayload) payload;
+            return stringLength(uuidPayload.getUuid()) + 4 + stringsLength(uuidPayload.getFeatures());
+        } else if (payload instanceof NeighborPayload) {
+            return neighborLength((NeighborPayload) payload);
+        } else if (payload instanceof StatusDeltaPayload) {
+            final StatusDeltaPayload statusDeltaPayload = (StatusDeltaPayload) payload;
+            return stringLength(statusDeltaPayload.getUuid()) + 4 + stringLength(statusDeltaPayload.getName())
+                    + stringLength(statusDeltaPayload.getIctVersion())
+                    + stringLength(statusDeltaPayload.getReportIxiVersion())
+                    + nullableIntegerLength(statusDeltaPayload.getIctRoundDuration())
+                    + neighborsLength(statusDeltaPayload.getNeighbors())
+                    + stringsLength(statusDeltaPayload.getRemovedNeighbors())
+                    + nullableIntegerLength(statusDeltaPayload.getSystemLoadAverage());
+        } else if (payload instanceof EnvelopePayload) {
+            int length = 2;
+            for (final Payload enclosed : ((EnvelopePayload) payload).getPayloads()) {
+                length += encodedLength(enclosed);
+            }
+            return length;
+        } else if (payload instanceof SequencedPayload) {
+            return 4 + encodedLength(((SequencedPayload) payload).getPayload());
+        }
+        // StatusAckPayload and DeliveryAckPayload
+        return 4;
+    }
+
+    private static Payload readBody(final byte type, final ByteBuffer buffer) {
+        switch (type) {
+            case TYPE_METADATA:
+                return new MetadataPayload(readString(buffer), readString(buffer), readInteger(buffer),
+                        readStrings(buffer));
+            case TYPE_PING:
+                return new PingPayload(readString(buffer));
+            case TYPE_STATUS:
+                return new StatusPayload(readString(buffer), readString(buffer), readString(buffer),
+                        readString(buffer), buffer.getInt(), readNeighbors(buffer), buffer.getInt(),
+                        readNullableInteger(buffer));
+            case TYPE_RECEIVED_PING:
+                return new ReceivedPingPayload(readString(buffer), readPing(buffer));
+            case TYPE_SUBMITTED_PING:
+                return new SubmittedPingPayload(readString(buffer), readPing(buffer));
+            case TYPE_REQUEST_UUID:
+                return new RequestUuidPayload(readString(buffer), buffer.getInt(), readInteger(buffer),
+                        readStrings(buffer));
+            case TYPE_UUID:
+                return new UuidPayload(readString(buffer), readInteger(buffer), readStrings(buffer));
+            case TYPE_NEIGHBOR:
+                return readNeighbor(buffer);
+            case TYPE_STATUS_DELTA:
+                return new StatusDeltaPayload(readString(buffer), buffer.getInt(), readString(buffer),
+                        readString(buffer), readString(buffer), readNullableInteger(buffer),
+                        readNeighbors(buffer), readStrings(buffer), readNullableInteger(buffer));
+            case TYPE_STATUS_ACK:
+                return new StatusAckPayload(buffer.getInt());
+            case TYPE_ENVELOPE:
+                final int count = buffer.getShort() & 0xFFFF;
+                final List<Payload> payloads = new ArrayList<>(Math.min(count, 64));
+                for (int i = 0; i < count; i++) {
+                    payloads.add(decodeEnclosed(type, buffer));
+                }
+                return new EnvelopePayload(payloads);
+            case TYPE_SEQUENCED:
+                return new SequencedPayload(buffer.getInt(), decodeEnclosed(type, buffer));
+            case TYPE_DELIVERY_ACK:
+                return new DeliveryAckPayload(buffer.getInt());
+            default:
+                throw new IllegalArgumentException("Unknown binary payload type: " + type);
+        }
+    }
+
+    /**
+     * Decodes a frame enclosed in an envelope or sequenced frame. Nesting is checked on the type tag
+     * before recursing, following Payload.canEnclose, so crafted frames can't overflow the stack.
+     */
+    private static Payload decodeEnclosed(final byte containerType, final ByteBuffer buffer) {
+        if (buffer.remaining() >= HEADER_LENGTH) {
+            final byte type = buffer.get(buffer.position() + 2);
+            if (type == TYPE_SEQUENCED || (type == TYPE_ENVELOPE && containerType != TYPE_SEQUENCED)) {
+                throw new IllegalArgumentException("Binary frame nested too deeply");
+            }
+        }
+        return decode(buffer);
+    }
+
+    private static void writePing(final ByteBuffer buffer, final PingPayload pingPayload) {
+        buffer.put((byte) (pingPayload != null ? 1 : 0));
+        if (pingPayload != null) {
+            writeString(buffer, pingPayload.getMessage());
+        }
+    }
+
+    private static int pingLength(final PingPayload pingPayload) {
+        return 1 + (pingPayload != null ? stringLength(pingPayload.getMessage()) : 0);
+    }
+
+    private static PingPayload readPing(final ByteBuffer buffer) {
+        return buffer.get() != 0 ? new PingPayload(readString(buffer)) : null;
+    }
+
+    private static void writeNeighbors(final ByteBuffer buffer, final List<NeighborPayload> neighbors) {
+        if (neighbors == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
+        }
+        buffer.putShort((short) neighbors.size());
+        for (final NeighborPayload neighbor : neighbors) {
+            writeNeighbor(buffer, neighbor);
+        }
+    }
+
+    private static int neighborsLength(final List<NeighborPayload> neighbors) {
+        int length = 2;
+        if (neighbors != null) {
+            for (final NeighborPayload neighbor : neighbors) {
+                length += neighborLength(neighbor);
+            }
+        }
+        return length;
+    }
+
+    private static List<NeighborPayload> readNeighbors(final ByteBuffer buffer) {
+        final int count = buffer.getShort() & 0xFFFF;
+        if (count == NULL_LENGTH) {
+            return null;
+        }
+        final List<NeighborPayload> neighbors = new ArrayList<>(Math.min(count, 16));
+        for (int i = 0; i < count; i++) {
+            neighbors.add(readNeighbor(buffer));
+        }
+        return neighbors;
+    }
+
+    private static void writeNeighbor(final ByteBuffer buffer, final NeighborPayload neighbor) {
+        writeLong(buffer, neighbor.getTimestamp());
+        writeString(buffer, neighbor.getUuid());
+        buffer.putInt(neighbor.getAll());
+        buffer.putInt(neighbor.getNew());
+        buffer.putInt(neighbor.getIgnored());
+        buffer.putInt(neighbor.getInvalid());
+        buffer.putInt(neighbor.getRequested());
+    }
+
+    private static int neighborLength(final NeighborPayload neighbor) {
+        return 1 + (neighbor.getTimestamp() != null ? 8 : 0) + stringLength(neighbor.getUuid()) + 5 * 4;
+    }
+
+    private static NeighborPayload readNeighbor(final ByteBuffer buffer) {
+        return new NeighborPayload(readLong(buffer), readString(buffer), buffer.getInt(), buffer.getInt(),
+                buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    private static void writeInteger(final ByteBuffer buffer, final Integer value) {
+        buffer.putInt(value != null ? value : 0);
+    }
+
+    private static Integer readInteger(final ByteBuffer buffer) {
+        return buffer.getInt();
+    }
+
+    static void writeNullableInteger(final ByteBuffer buffer, final Integer value) {
+        buffer.put((byte) (value != null ? 1 : 0));
+        if (value != null) {
+            buffer.putInt(value);
+        }
+    }
+
+    private static int nullableIntegerLength(final Integer value) {
+        return value != null ? 5 : 1;
+    }
+
+    private static Integer readNullableInteger(final ByteBuffer buffer) {
+        return buffer.get() != 0 ? buffer.getInt() : null;
+    }
+
+    private static void writeStrings(final ByteBuffer buffer, final List<String> values) {
+        if (values == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
+        }
+        buffer.putShort((short) values.size());
+        for (final String value : values) {
+            writeString(buffer, value);
+        }
+    }
+
+    private static int stringsLength(final List<String> values) {
+        int length = 2;
+        if (values != null) {
+            for (final String value : values) {
+                length += stringLength(value);
+            }
+        }
+        return length;
+    }
+
+    private static List<String> readStrings(final ByteBuffer buffer) {
+        final int count = buffer.getShort() & 0xFFFF;
+        if (count == NULL_LENGTH) {
+            return null;
+        }
+        final List<String> values = new ArrayList<>(Math.min(count, 16));
+        for (int i = 0; i < count; i++) {
+            values.add(readString(buffer));
+        }
+        return values;
+    }
+
+    static void writeLong(final ByteBuffer buffer, final Long value) {
+        buffer.put((byte) (value != null ? 1 : 0));
+        if (value != null) {
+            buffer.putLong(value);
+        }
+    }
+
+    private static Long readLong(final ByteBuffer buffer) {
+        return buffer.get() != 0 ? buffer.getLong() : null;
+    }
+
+    /**
+     * Writes an unsigned 16 bit byte length followed by the UTF-8 encoded string, without
+     * going through an intermediate byte array.
+     */
+    static void writeString(final ByteBuffer buffer, final String value) {
+        if (value == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
+        }
+        final int lengthPosition = buffer.position();
+        buffer.putShort((short) 0);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        final int length = buffer.position() - lengthPosition - 2;
+        if (length >= NULL_LENGTH) {
+            throw new BufferOverflowException();
+        }
+        buffer.putShort(lengthPosition, (short) length);
+    }
+
+    /**
+     * @return the length writeString produces, surrogate pairs take four bytes and a lone surrogate one
+     */
+    static int stringLength(final String value) {
+        int length = 2;
+        if (value == null) {
+            return length;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Truncated string in binary frame");
+        }
+        final String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
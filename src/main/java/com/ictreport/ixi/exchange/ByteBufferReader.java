@@ -0,0 +1,76 @@
+package com.ictreport.ixi.exchange;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes UTF-8 straight out of a ByteBuffer, so a datagram can be fed to a JsonReader
+ * without first copying it into a String.
+ */
+class ByteBufferReader extends Reader {
+
+    private final ByteBuffer buffer;
+    private char pendingLowSurrogate = 0;
+
+    ByteBufferReader(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read(final char[] chars, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining() && pendingLowSurrogate == 0) {
+            return -1;
+        }
+
+        int count = 0;
+        if (pendingLowSurrogate != 0) {
+            chars[offset + count++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+
+        while (count < length && buffer.hasRemaining()) {
+            final int b = buffer.get() & 0xFF;
+            if (b < 0x80) {
+                chars[offset + count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[offset + count++] = (char) (((b & 0x1F) << 6) | continuation());
+            } else if ((b & 0xF0) == 0xE0) {
+                chars[offset + count++] = (char) (((b & 0x0F) << 12) | (continuation() << 6) | continuation());
+            } else if ((b & 0xF8) == 0xF0) {
+                final int codePoint = ((b & 0x07) << 18) | (continuation() << 12)
+                        | (continuation() << 6) | continuation();
+                if (!Character.isSupplementaryCodePoint(codePoint)) {
+                    throw new IOException("Malformed UTF-8 sequence");
+                }
+                chars[offset + count++] = Character.highSurrogate(codePoint);
+                if (count < length) {
+                    chars[offset + count++] = Character.lowSurrogate(codePoint);
+                } else {
+                    pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            } else {
+                throw new IOException("Malformed UTF-8 sequence");
+            }
+        }
+        return count;
+    }
+
+    private int continuation() throws IOException {
+        if (!buffer.hasRemaining()) {
+            throw new IOException("Truncated UTF-8 sequence");
+        }
+        final int b = buffer.get() & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+            throw new IOException("Malformed UTF-8 sequence");
+        }
+        return b & 0x3F;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,17 @@
+package com.ictreport.ixi.exchange;
+
+public class DeliveryAckPayload extends Payload {
+
+    private final int sequence;
+
+    public DeliveryAckPayload(final int sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the cumulative ack, every SequencedPayload up to and including this sequence number was received
+     */
+    public int getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ictreport.ixi.exchange;
+
+import java.util.List;
+
+/**
+ * Carries several payloads in one datagram.
+ */
+public class EnvelopePayload extends Payload {
+
+    private final List<Payload> payloads;
+
+    public EnvelopePayload(final List<Payload> payloads) {
+        this.payloads = payloads;
+    }
+
+    public List<Payload> getPayloads() {
+        return payloads;
+    }
+}
@@ -0,0 +1,28 @@
+package com.ictreport.ixi.exchange;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Optional protocol features negotiated with the RCS. We advertise the supported ones in the
+ * RequestUuidPayload, the RCS answers with the ones it opted in to in the UuidPayload.
+ * Neighbors announce theirs in the MetadataPayload.
+ */
+public class Features {
+
+    public static final String STATUS_DELTA = "statusDelta";
+    public static final String BATCH = "batch";
+    public static final String FRAGMENT = "fragment";
+    public static final String RELIABLE = "reliable";
+
+    public static final List<String> SUPPORTED = Collections.unmodifiableList(Arrays.asList(
+            STATUS_DELTA,
+            BATCH,
+            FRAGMENT,
+            RELIABLE));
+
+    public static boolean isEnabled(final List<String> features, final String feature) {
+        return features != null && features.contains(feature);
+    }
+}
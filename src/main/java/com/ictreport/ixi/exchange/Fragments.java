@@ -0,0 +1,73 @@
+package com.ictreport.ixi.exchange;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits datagrams that exceed what a peer receives in one buffer into binary fragment frames.
+ * The fragments carry the raw bytes of the original datagram, whatever its wire format, so the
+ * receiver decodes the reassembled datagram exactly like one that arrived in a single piece.
+ *
+ * Fragment body: u32 message id, u16 fragment index, u16 fragment count, data.
+ */
+public class Fragments {
+
+    /** Longest datagram a peer receives without truncation, its receive buffer is one byte larger. */
+    public static final int MAX_DATAGRAM_LENGTH = 1023;
+    public static final int HEADER_LENGTH = BinaryCodec.HEADER_LENGTH + 8;
+    public static final int MAX_DATA_LENGTH = MAX_DATAGRAM_LENGTH - HEADER_LENGTH;
+    public static final int MAX_COUNT = 64;
+
+    public static boolean isFragment(final ByteBuffer buffer) {
+        return buffer.remaining() >= HEADER_LENGTH
+                && buffer.get(buffer.position()) == BinaryCodec.MAGIC
+                && buffer.get(buffer.position() + 2) == BinaryCodec.TYPE_FRAGMENT;
+    }
+
+    /**
+     * @return number of fragments a datagram of the given length is split into
+     */
+    public static int countFor(final int length) {
+        return (length + MAX_DATA_LENGTH - 1) / MAX_DATA_LENGTH;
+    }
+
+    /**
+     * Writes the index-th fragment of the remaining bytes of the datagram into the buffer,
+     * leaving the datagram's position untouched.
+     */
+    public static void write(final ByteBuffer buffer, final int messageId, final int index, final int count,
+                             final ByteBuffer datagram) {
+        final int offset = index * MAX_DATA_LENGTH;
+        final int length = Math.min(MAX_DATA_LENGTH, datagram.remaining() - offset);
+        final ByteBuffer data = datagram.duplicate();
+        data.position(datagram.position() + offset);
+        data.limit(data.position() + length);
+
+        final int start = BinaryCodec.beginFrame(buffer, BinaryCodec.TYPE_FRAGMENT);
+        buffer.putInt(messageId);
+        buffer.putShort((short) index);
+        buffer.putShort((short) count);
+        buffer.put(data);
+        BinaryCodec.endFrame(buffer, start);
+    }
+
+    public static int messageId(final ByteBuffer fragment) {
+        return fragment.getInt(fragment.position() + BinaryCodec.HEADER_LENGTH);
+    }
+
+    public static int index(final ByteBuffer fragment) {
+        return fragment.getShort(fragment.position() + BinaryCodec.HEADER_LENGTH + 4) & 0xFFFF;
+    }
+
+    public static int count(final ByteBuffer fragment) {
+        return fragment.getShort(fragment.position() + BinaryCodec.HEADER_LENGTH + 6) & 0xFFFF;
+    }
+
+    /**
+     * @return the fragment's share of the original datagram, sharing the fragment's content
+     */
+    public static ByteBuffer data(final ByteBuffer fragment) {
+        final ByteBuffer data = fragment.duplicate();
+        data.position(fragment.position() + HEADER_LENGTH);
+        return data;
+    }
+}
@@ -1,13 +1,28 @@
 package com.ictreport.ixi.exchange;
 
+import java.util.List;
+
 public class MetadataPayload extends Payload {
 
     private final String uuid;
     private final String reportIxiVersion;
+    private final Integer wireVersion;
+    private final List<String> features;
 
     public MetadataPayload(final String uuid, final String reportIxiVersion) {
+        this(uuid, reportIxiVersion, null);
+    }
+
+    public MetadataPayload(final String uuid, final String reportIxiVersion, final Integer wireVersion) {
+        this(uuid, reportIxiVersion, wireVersion, null);
+    }
+
+    public MetadataPayload(final String uuid, final String reportIxiVersion, final Integer wireVersion,
+                           final List<String> features) {
         this.uuid = uuid;
         this.reportIxiVersion = reportIxiVersion;
+        this.wireVersion = wireVersion;
+        this.features = features;
     }
 
     public String getUuid() {
@@ -17,4 +32,18 @@ public class MetadataPayload extends Payload {
     public String getReportIxiVersion() {
         return reportIxiVersion;
     }
+
+    /**
+     * @return the highest binary wire format version the sender understands, null for JSON-only peers
+     */
+    public Integer getWireVersion() {
+        return wireVersion;
+    }
+
+    /**
+     * @return the optional features the sender supports, null if it didn't announce any
+     */
+    public List<String> getFeatures() {
+        return features;
+    }
 }
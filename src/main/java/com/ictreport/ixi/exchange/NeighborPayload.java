@@ -2,6 +2,8 @@ package com.ictreport.ixi.exchange;
 
 import com.google.gson.annotations.SerializedName;
 
+import java.util.Objects;
+
 public class NeighborPayload extends Payload {
 
     private final Long timestamp;
@@ -50,4 +52,23 @@ public class NeighborPayload extends Payload {
     public int getRequested() {
         return requested;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NeighborPayload that = (NeighborPayload) o;
+        return all == that.all &&
+                newTx == that.newTx &&
+                ignored == that.ignored &&
+                invalid == that.invalid &&
+                requested == that.requested &&
+                Objects.equals(timestamp, that.timestamp) &&
+                Objects.equals(uuid, that.uuid);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, uuid, all, newTx, ignored, invalid, requested);
+    }
 }
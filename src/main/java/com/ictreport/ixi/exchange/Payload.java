@@ -2,41 +2,250 @@ package com.ictreport.ixi.exchange;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.typeadapters.RuntimeTypeAdapterFactory;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class Payload {
 
-    public static String serialize(final Payload payload) {
-        final RuntimeTypeAdapterFactory<Payload> runtimeTypeAdapterFactory = RuntimeTypeAdapterFactory
-                .of(Payload.class, "type")
-                .registerSubtype(MetadataPayload.class, "MetadataPayload")
-                .registerSubtype(PingPayload.class, "PingPayload")
-                .registerSubtype(StatusPayload.class, "StatusPayload")
-                .registerSubtype(ReceivedPingPayload.class, "ReceivedPingPayload")
-                .registerSubtype(SubmittedPingPayload.class, "SubmittedPingPayload")
-                .registerSubtype(RequestUuidPayload.class, "RequestUuidPayload")
-                .registerSubtype(UuidPayload.class, "UuidPayload")
-                .registerSubtype(NeighborPayload.class, "NeighborPayload");
+    // Every payload type is registered under its simple class name.
+    private static final List<Class<? extends Payload>> SUBTYPES = Arrays.asList(
+            MetadataPayload.class,
+            PingPayload.class,
+            StatusPayload.class,
+            ReceivedPingPayload.class,
+            SubmittedPingPayload.class,
+            RequestUuidPayload.class,
+            UuidPayload.class,
+            NeighborPayload.class,
+            StatusDeltaPayload.class,
+            StatusAckPayload.class,
+            EnvelopePayload.class,
+            SequencedPayload.class,
+            DeliveryAckPayload.class);
+
+    private static final byte[]   TYPE_FIELD = "\"type\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[][] TYPE_LABELS = new byte[SUBTYPES.size()][];
+    private static final int      TYPE_NOT_LEADING = -1;
+    // A sequenced envelope of status payloads with neighbors nests six levels deep
+    private static final int      MAX_JSON_DEPTH = 16;
+
+    // Gson instances are immutable and thread-safe, and they cache the per-subtype
+    // adapters created by the factory, so one shared codec serves every call site.
+    private static final Gson GSON;
+    private static final List<TypeAdapter<? extends Payload>> SUBTYPE_ADAPTERS = new ArrayList<>();
 
-        final Gson gson = new GsonBuilder().registerTypeAdapterFactory(runtimeTypeAdapterFactory).create();
+    static {
+        final RuntimeTypeAdapterFactory<Payload> runtimeTypeAdapterFactory =
+                RuntimeTypeAdapterFactory.of(Payload.class, "type");
+        for (int i = 0; i < SUBTYPES.size(); i++) {
+            final Class<? extends Payload> subtype = SUBTYPES.get(i);
+            runtimeTypeAdapterFactory.registerSubtype(subtype, subtype.getSimpleName());
+            TYPE_LABELS[i] = subtype.getSimpleName().getBytes(StandardCharsets.UTF_8);
+        }
 
-        return gson.toJson(payload, Payload.class);
+        GSON = new GsonBuilder().registerTypeAdapterFactory(runtimeTypeAdapterFactory).create();
+
+        // Resolve the adapters up front instead of on the first received packet.
+        GSON.getAdapter(Payload.class);
+        for (final Class<? extends Payload> subtype : SUBTYPES) {
+            SUBTYPE_ADAPTERS.add(GSON.getAdapter(subtype));
+        }
+    }
+
+    public static String serialize(final Payload payload) {
+        return GSON.toJson(payload, Payload.class);
     }
 
     public static Payload deserialize(final String json) {
-        final RuntimeTypeAdapterFactory<Payload> runtimeTypeAdapterFactory = RuntimeTypeAdapterFactory
-                .of(Payload.class, "type")
-                .registerSubtype(MetadataPayload.class, "MetadataPayload")
-                .registerSubtype(PingPayload.class, "PingPayload")
-                .registerSubtype(StatusPayload.class, "StatusPayload")
-                .registerSubtype(ReceivedPingPayload.class, "ReceivedPingPayload")
-                .registerSubtype(SubmittedPingPayload.class, "SubmittedPingPayload")
-                .registerSubtype(RequestUuidPayload.class, "RequestUuidPayload")
-                .registerSubtype(UuidPayload.class, "UuidPayload")
-                .registerSubtype(NeighborPayload.class, "NeighborPayload");
-
-        final Gson gson = new GsonBuilder().registerTypeAdapterFactory(runtimeTypeAdapterFactory).create();
-
-        return gson.fromJson(json, Payload.class);
+        return GSON.fromJson(json, Payload.class);
+    }
+
+    /**
+     * @param wireVersion the wire format version negotiated with the receiver, 0 for JSON
+     */
+    public static byte[] encode(final Payload payload, final int wireVersion) {
+        if (wireVersion >= BinaryCodec.VERSION) {
+            return BinaryCodec.encode(payload);
+        }
+        return serialize(payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the length encode() would produce for the same wire version, without building the bytes
+     */
+    public static int encodedLength(final Payload payload, final int wireVersion) {
+        if (wireVersion >= BinaryCodec.VERSION) {
+            return BinaryCodec.encodedLength(payload);
+        }
+        final Utf8LengthWriter writer = new Utf8LengthWriter();
+        GSON.toJson(payload, Payload.class, writer);
+        return writer.length();
+    }
+
+    public static Payload decode(final byte[] data, final int offset, final int length) {
+        return decode(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Decodes the remaining bytes of the buffer without copying them into a String first.
+     * The type tag is checked before anything is materialized, so unknown payload types
+     * are rejected without building an object graph.
+     */
+    public static Payload decode(final ByteBuffer buffer) {
+        if (buffer.hasRemaining() && buffer.get(buffer.position()) == BinaryCodec.MAGIC) {
+            return BinaryCodec.decode(buffer);
+        }
+
+        final int subtype = leadingSubtype(buffer);
+        // Gson reads nested values recursively, a deeply nested datagram would overflow the stack.
+        if (exceedsDepth(buffer, MAX_JSON_DEPTH)) {
+            throw new JsonParseException("Payload nested too deeply");
+        }
+        final JsonReader reader = new JsonReader(new ByteBufferReader(buffer.duplicate()));
+        reader.setLenient(true);
+        try {
+            final Payload payload;
+            if (subtype != TYPE_NOT_LEADING) {
+                payload = SUBTYPE_ADAPTERS.get(subtype).read(reader);
+            } else {
+                // The type isn't the first member, fall back to the buffering polymorphic adapter.
+                payload = GSON.getAdapter(Payload.class).read(reader);
+            }
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Trailing data after payload");
+            }
+            return payload;
+        } catch (final IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Envelopes and sequenced payloads only nest the way the sender builds them: a sequenced payload
+     * may carry an envelope, nothing else encloses either of them. This bounds the nesting depth of
+     * anything received, however it was crafted.
+     */
+    public static boolean canEnclose(final Payload container, final Payload enclosed) {
+        if (enclosed instanceof SequencedPayload) {
+            return false;
+        }
+        return !(enclosed instanceof EnvelopePayload) || container instanceof SequencedPayload;
+    }
+
+    /**
+     * A cheap plausibility check of a datagram before it is decoded: a well formed binary frame,
+     * or something enclosed in braces like a JSON object. Passing it doesn't mean decode succeeds.
+     */
+    public static boolean isWellFormed(final ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+        if (buffer.get(buffer.position()) == BinaryCodec.MAGIC) {
+            return BinaryCodec.isWellFormedFrame(buffer);
+        }
+        final int first = skipWhitespace(buffer, buffer.position());
+        int last = buffer.limit() - 1;
+        while (last > first && isWhitespace(buffer.get(last))) {
+            last--;
+        }
+        return first < last && buffer.get(first) == '{' && buffer.get(last) == '}';
+    }
+
+    /**
+     * Scans the raw JSON bytes for a leading "type" member.
+     *
+     * @return the index of the registered subtype, or TYPE_NOT_LEADING if the first member isn't "type"
+     * @throws JsonParseException if the data is not a JSON object or names an unknown type
+     */
+    private static int leadingSubtype(final ByteBuffer buffer) {
+        final int limit = buffer.limit();
+        int i = skipWhitespace(buffer, buffer.position());
+        if (i >= limit || buffer.get(i) != '{') {
+            throw new JsonParseException("Payload is not a JSON object");
+        }
+        i = skipWhitespace(buffer, i + 1);
+        if (!startsWith(buffer, i, TYPE_FIELD)) {
+            return TYPE_NOT_LEADING;
+        }
+        i = skipWhitespace(buffer, i + TYPE_FIELD.length);
+        if (i >= limit || buffer.get(i) != ':') {
+            throw new JsonParseException("Malformed payload type");
+        }
+        i = skipWhitespace(buffer, i + 1);
+        if (i >= limit || buffer.get(i) != '"') {
+            throw new JsonParseException("Malformed payload type");
+        }
+        i++;
+        for (int subtype = 0; subtype < TYPE_LABELS.length; subtype++) {
+            final byte[] label = TYPE_LABELS[subtype];
+            if (startsWith(buffer, i, label) && i + label.length < limit && buffer.get(i + label.length) == '"') {
+                return subtype;
+            }
+        }
+        throw new JsonParseException("Unknown payload type");
+    }
+
+    /**
+     * Scans the raw JSON bytes for objects and arrays nested deeper than maxDepth, skipping strings.
+     */
+    private static boolean exceedsDepth(final ByteBuffer buffer, final int maxDepth) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            final byte b = buffer.get(i);
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                if (++depth > maxDepth) {
+                    return true;
+                }
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        }
+        return false;
+    }
+
+    private static int skipWhitespace(final ByteBuffer buffer, int index) {
+        while (index < buffer.limit()) {
+            if (!isWhitespace(buffer.get(index))) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static boolean startsWith(final ByteBuffer buffer, final int index, final byte[] prefix) {
+        if (index + prefix.length > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(index + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 }
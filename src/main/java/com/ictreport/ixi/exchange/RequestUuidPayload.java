@@ -1,13 +1,24 @@
 package com.ictreport.ixi.exchange;
 
+import java.util.List;
+
 public class RequestUuidPayload extends Payload {
 
     private final int port;
     private final String uuid;
+    private final Integer wireVersion;
+    private final List<String> features;
 
     public RequestUuidPayload(final String uuid, final int port) {
+        this(uuid, port, null, null);
+    }
+
+    public RequestUuidPayload(final String uuid, final int port, final Integer wireVersion,
+                              final List<String> features) {
         this.uuid = uuid;
         this.port = port;
+        this.wireVersion = wireVersion;
+        this.features = features;
     }
 
     public int getPort() {
@@ -17,4 +28,15 @@ public class RequestUuidPayload extends Payload {
     public String getUuid() {
         return uuid;
     }
-}
\ No newline at end of file
+
+    public Integer getWireVersion() {
+        return wireVersion;
+    }
+
+    /**
+     * @return the optional protocol features this node supports, see {@link Features}
+     */
+    public List<String> getFeatures() {
+        return features;
+    }
+}
@@ -0,0 +1,24 @@
+package com.ictreport.ixi.exchange;
+
+/**
+ * Carries a payload under a sequence number of the reliable delivery layer. The receiver
+ * acknowledges it with a DeliveryAckPayload.
+ */
+public class SequencedPayload extends Payload {
+
+    private final int sequence;
+    private final Payload payload;
+
+    public SequencedPayload(final int sequence, final Payload payload) {
+        this.sequence = sequence;
+        this.payload = payload;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public Payload getPayload() {
+        return payload;
+    }
+}
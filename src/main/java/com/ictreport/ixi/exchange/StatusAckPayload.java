@@ -0,0 +1,17 @@
+package com.ictreport.ixi.exchange;
+
+public class StatusAckPayload extends Payload {
+
+    private final int sequence;
+
+    public StatusAckPayload(final int sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the sequence number of the full StatusPayload the RCS received
+     */
+    public int getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,74 @@
+package com.ictreport.ixi.exchange;
+
+import java.util.List;
+
+/**
+ * Changes since the last full StatusPayload the RCS acknowledged. Fields that did not change are null,
+ * neighbors only contains new or changed entries, removedNeighbors lists the uuids of dropped ones.
+ */
+public class StatusDeltaPayload extends Payload {
+
+    private final String uuid;
+    private final int    keyframe;
+    private final String name;
+    private final String ictVersion;
+    private final String reportIxiVersion;
+    private final Integer ictRoundDuration;
+    private final List<NeighborPayload> neighbors;
+    private final List<String> removedNeighbors;
+    private final Integer systemLoadAverage;
+
+    public StatusDeltaPayload(final String uuid, final int keyframe, final String name, final String ictVersion,
+                              final String reportIxiVersion, final Integer ictRoundDuration,
+                              final List<NeighborPayload> neighbors, final List<String> removedNeighbors,
+                              final Integer systemLoadAverage) {
+        this.uuid = uuid;
+        this.keyframe = keyframe;
+        this.name = name;
+        this.ictVersion = ictVersion;
+        this.reportIxiVersion = reportIxiVersion;
+        this.ictRoundDuration = ictRoundDuration;
+        this.neighbors = neighbors;
+        this.removedNeighbors = removedNeighbors;
+        this.systemLoadAverage = systemLoadAverage;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @return the sequence number of the StatusPayload this delta is based on
+     */
+    public int getKeyframe() {
+        return keyframe;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getIctVersion() {
+        return ictVersion;
+    }
+
+    public String getReportIxiVersion() {
+        return reportIxiVersion;
+    }
+
+    public Integer getIctRoundDuration() {
+        return ictRoundDuration;
+    }
+
+    public List<NeighborPayload> getNeighbors() {
+        return neighbors;
+    }
+
+    public List<String> getRemovedNeighbors() {
+        return removedNeighbors;
+    }
+
+    public Integer getSystemLoadAverage() {
+        return systemLoadAverage;
+    }
+}
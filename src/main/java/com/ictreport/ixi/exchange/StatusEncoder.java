@@ -0,0 +1,189 @@
+package com.ictreport.ixi.exchange;
+
+import com.ictreport.ixi.model.Neighbor;
+import com.ictreport.ixi.model.Stats;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Writes a status report straight from the neighbor model into a reusable buffer, in either
+ * wire format, producing the same content a serialized StatusPayload would have.
+ *
+ * Once the buffer exists, encoding allocates nothing: no NeighborPayload list, no StatusPayload,
+ * no intermediate JSON String or byte array. An encoder is not thread-safe, every sender thread
+ * needs its own instance.
+ */
+public class StatusEncoder {
+
+    private final ByteBuffer buffer;
+
+    public StatusEncoder(final int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * The neighbor list is walked by index, so pass a random access list to keep encoding linear.
+     *
+     * @return the encoded datagram, valid until the next call
+     * @throws java.nio.BufferOverflowException if the report does not fit the buffer
+     */
+    public ByteBuffer encode(final int wireVersion, final String uuid, final String name, final String ictVersion,
+                             final String reportIxiVersion, final int ictRoundDuration,
+                             final List<Neighbor> neighbors, final int systemLoadAverage) {
+        buffer.clear();
+        if (wireVersion >= BinaryCodec.VERSION) {
+            encodeBinary(uuid, name, ictVersion, reportIxiVersion, ictRoundDuration, neighbors, systemLoadAverage);
+        } else {
+            encodeJson(uuid, name, ictVersion, reportIxiVersion, ictRoundDuration, neighbors, systemLoadAverage);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void encodeBinary(final String uuid, final String name, final String ictVersion,
+                              final String reportIxiVersion, final int ictRoundDuration,
+                              final List<Neighbor> neighbors, final int systemLoadAverage) {
+        final int start = BinaryCodec.beginFrame(buffer, BinaryCodec.TYPE_STATUS);
+        BinaryCodec.writeString(buffer, uuid);
+        BinaryCodec.writeString(buffer, name);
+        BinaryCodec.writeString(buffer, ictVersion);
+        BinaryCodec.writeString(buffer, reportIxiVersion);
+        buffer.putInt(ictRoundDuration);
+        buffer.putShort((short) neighbors.size());
+        for (int i = 0; i < neighbors.size(); i++) {
+            final Neighbor neighbor = neighbors.get(i);
+            final Stats stats = neighbor.getStats();
+            BinaryCodec.writeLong(buffer, stats.getTimestamp());
+            BinaryCodec.writeString(buffer, neighbor.getUuid() != null ? neighbor.getUuid() : "");
+            buffer.putInt(orDefault(stats.getAllTx()));
+            buffer.putInt(orDefault(stats.getNewTx()));
+            buffer.putInt(orDefault(stats.getIgnoredTx()));
+            buffer.putInt(orDefault(stats.getInvalidTx()));
+            buffer.putInt(orDefault(stats.getRequestedTx()));
+        }
+        buffer.putInt(systemLoadAverage);
+        BinaryCodec.writeNullableInteger(buffer, null);
+        BinaryCodec.endFrame(buffer, start);
+    }
+
+    private void encodeJson(final String uuid, final String name, final String ictVersion,
+                            final String reportIxiVersion, final int ictRoundDuration,
+                            final List<Neighbor> neighbors, final int systemLoadAverage) {
+        // Null members are left out, like Gson does by default.
+        putAscii("{\"type\":\"StatusPayload\"");
+        putStringMember("uuid", uuid);
+        putStringMember("name", name);
+        putStringMember("ictVersion", ictVersion);
+        putStringMember("reportIxiVersion", reportIxiVersion);
+        putAscii(",\"ictRoundDuration\":");
+        putNumber(ictRoundDuration);
+        putAscii(",\"neighbors\":[");
+        for (int i = 0; i < neighbors.size(); i++) {
+            final Neighbor neighbor = neighbors.get(i);
+            final Stats stats = neighbor.getStats();
+            if (i > 0) {
+                buffer.put((byte) ',');
+            }
+            buffer.put((byte) '{');
+            if (stats.getTimestamp() != null) {
+                putAscii("\"timestamp\":");
+                putNumber(stats.getTimestamp());
+                buffer.put((byte) ',');
+            }
+            putAscii("\"uuid\":");
+            putString(neighbor.getUuid() != null ? neighbor.getUuid() : "");
+            putAscii(",\"all\":");
+            putNumber(orDefault(stats.getAllTx()));
+            putAscii(",\"new\":");
+            putNumber(orDefault(stats.getNewTx()));
+            putAscii(",\"ignored\":");
+            putNumber(orDefault(stats.getIgnoredTx()));
+            putAscii(",\"invalid\":");
+            putNumber(orDefault(stats.getInvalidTx()));
+            putAscii(",\"requested\":");
+            putNumber(orDefault(stats.getRequestedTx()));
+            buffer.put((byte) '}');
+        }
+        putAscii("],\"systemLoadAverage\":");
+        putNumber(systemLoadAverage);
+        buffer.put((byte) '}');
+    }
+
+    private static int orDefault(final Integer value) {
+        // Same default NeighborPayload applies to missing stats.
+        return value != null ? value : -1;
+    }
+
+    private void putStringMember(final String key, final String value) {
+        if (value == null) {
+            return;
+        }
+        buffer.put((byte) ',');
+        buffer.put((byte) '"');
+        putAscii(key);
+        buffer.put((byte) '"');
+        buffer.put((byte) ':');
+        putString(value);
+    }
+
+    private void putAscii(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private void putString(final String value) {
+        buffer.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.put((byte) '\\');
+                buffer.put((byte) c);
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029' || Character.isSurrogate(c)) {
+                // Escaping surrogates keeps the output valid JSON without a UTF-8 pair encoder here.
+                putUnicodeEscape(c);
+            } else if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.put((byte) '"');
+    }
+
+    private void putUnicodeEscape(final char c) {
+        buffer.put((byte) '\\');
+        buffer.put((byte) 'u');
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            buffer.put((byte) Character.forDigit((c >> shift) & 0xF, 16));
+        }
+    }
+
+    private void putNumber(final long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+        }
+        // Digits are produced from the negative value, which also covers Long.MIN_VALUE.
+        long remainder = value < 0 ? value : -value;
+        int digits = 1;
+        for (long rest = remainder / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        final int start = buffer.position();
+        if (digits > buffer.remaining()) {
+            throw new BufferOverflowException();
+        }
+        buffer.position(start + digits);
+        for (int i = start + digits - 1; i >= start; i--) {
+            buffer.put(i, (byte) ('0' - (remainder % 10)));
+            remainder /= 10;
+        }
+    }
+}
@@ -11,10 +11,18 @@ public class StatusPayload extends Payload {
     private final int    ictRoundDuration;
     private final List<NeighborPayload> neighbors;
     private final int    systemLoadAverage;
+    private final Integer sequence;
 
     public StatusPayload(final String uuid, final String name, final String ictVersion,
                          final String reportIxiVersion, final int ictRoundDuration,
                          final List<NeighborPayload> neighbors, final int systemLoadAverage) {
+        this(uuid, name, ictVersion, reportIxiVersion, ictRoundDuration, neighbors, systemLoadAverage, null);
+    }
+
+    public StatusPayload(final String uuid, final String name, final String ictVersion,
+                         final String reportIxiVersion, final int ictRoundDuration,
+                         final List<NeighborPayload> neighbors, final int systemLoadAverage,
+                         final Integer sequence) {
         this.uuid = uuid;
         this.name = name;
         this.ictVersion = ictVersion;
@@ -22,6 +30,7 @@ public class StatusPayload extends Payload {
         this.ictRoundDuration = ictRoundDuration;
         this.neighbors = neighbors;
         this.systemLoadAverage = systemLoadAverage;
+        this.sequence = sequence;
     }
 
     public String getUuid() {
@@ -51,4 +60,11 @@ public class StatusPayload extends Payload {
     public int getSystemLoadAverage() {
         return systemLoadAverage;
     }
+
+    /**
+     * @return the keyframe sequence number the RCS acknowledges in delta mode, null otherwise
+     */
+    public Integer getSequence() {
+        return sequence;
+    }
 }
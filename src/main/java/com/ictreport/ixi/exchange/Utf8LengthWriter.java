@@ -0,0 +1,61 @@
+package com.ictreport.ixi.exchange;
+
+import java.io.Writer;
+
+/**
+ * Counts the UTF-8 encoded length of everything written to it, so the size of a JSON payload
+ * can be taken without building the String or the byte array.
+ */
+class Utf8LengthWriter extends Writer {
+
+    private int length = 0;
+    private boolean pendingHighSurrogate = false;
+
+    @Override
+    public void write(final int c) {
+        count((char) c);
+    }
+
+    @Override
+    public void write(final char[] chars, final int offset, final int length) {
+        for (int i = offset; i < offset + length; i++) {
+            count(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(final String value, final int offset, final int length) {
+        for (int i = offset; i < offset + length; i++) {
+            count(value.charAt(i));
+        }
+    }
+
+    /**
+     * Surrogate pairs take four bytes, a lone surrogate is replaced by a single '?' like
+     * String.getBytes does.
+     */
+    private void count(final char c) {
+        if (Character.isLowSurrogate(c) && pendingHighSurrogate) {
+            length += 3;
+        } else if (c < 0x80 || Character.isSurrogate(c)) {
+            length += 1;
+        } else if (c < 0x800) {
+            length += 2;
+        } else {
+            length += 3;
+        }
+        pendingHighSurrogate = Character.isHighSurrogate(c);
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -1,16 +1,39 @@
 package com.ictreport.ixi.exchange;
 
+import java.util.List;
+
 public class UuidPayload extends Payload {
 
     private final String uuid;
+    private final Integer wireVersion;
+    private final List<String> features;
 
     public UuidPayload(final String uuid) {
+        this(uuid, null, null);
+    }
 
+    public UuidPayload(final String uuid, final Integer wireVersion, final List<String> features) {
         this.uuid = uuid;
+        this.wireVersion = wireVersion;
+        this.features = features;
     }
 
     public String getUuid() {
         return uuid;
     }
 
+    /**
+     * @return the binary wire format version the RCS opted in to, null if it only speaks JSON
+     */
+    public Integer getWireVersion() {
+        return wireVersion;
+    }
+
+    /**
+     * @return the optional protocol features the RCS opted in to, see {@link Features}
+     */
+    public List<String> getFeatures() {
+        return features;
+    }
+
 }
@@ -3,11 +3,16 @@ package com.ictreport.ixi.model;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Collections;
+import java.util.List;
+
 public class Neighbor {
 
     private static final Logger LOGGER = LogManager.getLogger("Neighbor");
     private String uuid = null;
     private String reportIxiVersion = null;
+    private volatile int wireVersion = 0;
+    private volatile List<String> features = Collections.emptyList();
     private AddressAndStats addressAndStats;
 
     public Neighbor(final Address address) {
@@ -30,6 +35,28 @@ public class Neighbor {
         this.reportIxiVersion = reportIxiVersion;
     }
 
+    /**
+     * @return the binary wire format version negotiated with this neighbor, 0 for JSON
+     */
+    public int getWireVersion() {
+        return wireVersion;
+    }
+
+    public void setWireVersion(final int wireVersion) {
+        this.wireVersion = wireVersion;
+    }
+
+    /**
+     * @return the optional features the neighbor announced in its metadata
+     */
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    public void setFeatures(final List<String> features) {
+        this.features = features != null ? features : Collections.<String>emptyList();
+    }
+
     public AddressAndStats getAddressAndStats() {
         return addressAndStats;
     }
@@ -127,6 +154,8 @@ public class Neighbor {
         return "Neighbor{" +
                 "uuid='" + uuid + '\'' +
                 ", reportIxiVersion='" + reportIxiVersion + '\'' +
+                ", wireVersion=" + wireVersion +
+                ", features=" + features +
                 ", addressAndStats=" + addressAndStats +
                 '}';
     }
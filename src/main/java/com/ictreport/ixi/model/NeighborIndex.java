@@ -0,0 +1,99 @@
+package com.ictreport.ixi.model;
+
+import com.ictreport.ixi.utils.AddressResolver;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the neighbor list, with a lookup by the resolved address their report datagrams come
+ * from. Built once per neighbor sync and published as a whole, so readers iterate the neighbors
+ * without locking or copying, and identifying the sender of a packet is a hash lookup on the source
+ * address the channel returned, without parsing or allocating anything.
+ *
+ * Only the list and the lookup are immutable. The Neighbor objects are shared with later snapshots
+ * and updated in place, by the next sync's syncAddressAndStats and by the receiver, so a reader may
+ * see a neighbor between two of its updates, e.g. the new stats with the old address.
+ */
+public class NeighborIndex {
+
+    public static final NeighborIndex EMPTY = new NeighborIndex(Collections.<Neighbor>emptyList(),
+            Collections.<InetSocketAddress, Neighbor>emptyMap(), Collections.<InetAddress, Neighbor>emptyMap());
+
+    private final List<Neighbor> neighbors;
+    private final Map<InetSocketAddress, Neighbor> byReportSocketAddress;
+    private final Map<InetAddress, Neighbor> byInetAddress;
+
+    private NeighborIndex(final List<Neighbor> neighbors, final Map<InetSocketAddress, Neighbor> byReportSocketAddress,
+                          final Map<InetAddress, Neighbor> byInetAddress) {
+        this.neighbors = neighbors;
+        this.byReportSocketAddress = byReportSocketAddress;
+        this.byInetAddress = byInetAddress;
+    }
+
+    public static NeighborIndex of(final List<Neighbor> neighbors, final AddressResolver addressResolver) {
+        final Map<InetSocketAddress, Neighbor> byReportSocketAddress = new HashMap<>();
+        final Map<InetAddress, Neighbor> byInetAddress = new HashMap<>();
+
+        for (final Neighbor neighbor : neighbors) {
+            final InetAddress inetAddress = resolve(neighbor.getAddress(), addressResolver);
+            if (inetAddress == null) {
+                continue;
+            }
+            // The first neighbor wins, like the linear scan this replaces.
+            final InetSocketAddress reportSocketAddress =
+                    new InetSocketAddress(inetAddress, neighbor.getAddress().getReportPort());
+            if (!byReportSocketAddress.containsKey(reportSocketAddress)) {
+                byReportSocketAddress.put(reportSocketAddress, neighbor);
+            }
+            if (!byInetAddress.containsKey(inetAddress)) {
+                byInetAddress.put(inetAddress, neighbor);
+            }
+        }
+
+        final List<Neighbor> snapshot = Collections.unmodifiableList(
+                Arrays.asList(neighbors.toArray(new Neighbor[neighbors.size()])));
+        return new NeighborIndex(snapshot, byReportSocketAddress, byInetAddress);
+    }
+
+    /**
+     * @return all neighbors in sync order, unmodifiable
+     */
+    public List<Neighbor> getNeighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Matches the source ip and port first, then falls back to the ip alone, for neighbors sending
+     * from another port than the configured report port.
+     *
+     * @return the neighbor who sent from the source, or null if it's no neighbor
+     */
+    public Neighbor find(final InetSocketAddress source) {
+        final Neighbor neighbor = byReportSocketAddress.get(source);
+        if (neighbor != null) {
+            return neighbor;
+        }
+        return byInetAddress.get(source.getAddress());
+    }
+
+    public int size() {
+        return byReportSocketAddress.size();
+    }
+
+    private static InetAddress resolve(final Address address, final AddressResolver addressResolver) {
+        // The ip is what datagrams arrive from, the hostname is only used for neighbors without one.
+        if (address.getIp() != null && !address.getIp().isEmpty()) {
+            return addressResolver.resolve(address.getIp());
+        }
+        if (address.getHostname() != null && !address.getHostname().isEmpty()) {
+            return addressResolver.resolve(address.getHostname());
+        }
+        return null;
+    }
+}
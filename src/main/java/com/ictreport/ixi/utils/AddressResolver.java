@@ -0,0 +1,142 @@
+package com.ictreport.ixi.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches hostname lookups. A hostname is resolved on its first use only, after that lookups are
+ * served from the cache and a background task re-resolves entries older than the ttl, so callers
+ * never wait for DNS while address changes are still picked up.
+ *
+ * When a refresh fails the last known address is kept. Entries that haven't been looked up for
+ * a few ttl periods are evicted.
+ */
+public class AddressResolver {
+
+    private static final Logger LOGGER = LogManager.getLogger("AddressResolver");
+    private static final int EVICT_AFTER_TTL_PERIODS = 3;
+    private final long ttl;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private Timer refreshTimer;
+
+    public AddressResolver(final long ttl) {
+        this.ttl = ttl;
+    }
+
+    public synchronized void start() {
+        if (refreshTimer != null) {
+            return;
+        }
+        refreshTimer = new Timer("AddressResolver", true);
+        refreshTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    refresh(System.currentTimeMillis());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    LOGGER.warn("Address refresh failed unexpectedly", e);
+                }
+            }
+        }, ttl, ttl);
+    }
+
+    public synchronized void shutDown() {
+        if (refreshTimer != null) {
+            refreshTimer.cancel();
+            refreshTimer = null;
+        }
+    }
+
+    /**
+     * @return the cached address, or null if the host never resolved
+     */
+    public InetAddress resolve(final String host) {
+        final Entry entry = entry(host);
+        return entry.address;
+    }
+
+    /**
+     * Reuses the socket address returned by the previous call for the same host and port as long
+     * as the address didn't change, so repeated lookups allocate nothing.
+     *
+     * @return the cached socket address, or an unresolved one if the host never resolved
+     */
+    public InetSocketAddress resolve(final String host, final int port) {
+        final Entry entry = entry(host);
+        final InetAddress address = entry.address;
+        final InetSocketAddress socketAddress = entry.socketAddress;
+        if (socketAddress != null && socketAddress.getPort() == port && socketAddress.getAddress() == address) {
+            return socketAddress;
+        }
+        final InetSocketAddress newSocketAddress = address != null
+                ? new InetSocketAddress(address, port)
+                : InetSocketAddress.createUnresolved(host, port);
+        entry.socketAddress = newSocketAddress;
+        return newSocketAddress;
+    }
+
+    /**
+     * Re-resolves the entries older than the ttl and evicts unused ones.
+     */
+    void refresh(final long now) {
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Entry> mapEntry = iterator.next();
+            final Entry entry = mapEntry.getValue();
+            if (now - entry.lastUsed > EVICT_AFTER_TTL_PERIODS * ttl) {
+                iterator.remove();
+            } else if (now - entry.resolvedAt >= ttl) {
+                update(mapEntry.getKey(), entry, now);
+            }
+        }
+    }
+
+    protected InetAddress lookup(final String host) throws UnknownHostException {
+        return InetAddress.getByName(host);
+    }
+
+    private Entry entry(final String host) {
+        Entry entry = entries.get(host);
+        if (entry == null) {
+            // First use, nothing to serve yet, so this lookup is the only one done by the caller.
+            entry = new Entry();
+            update(host, entry, System.currentTimeMillis());
+            entries.put(host, entry);
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry;
+    }
+
+    private void update(final String host, final Entry entry, final long now) {
+        try {
+            final InetAddress address = lookup(host);
+            if (!address.equals(entry.address)) {
+                if (entry.address != null) {
+                    LOGGER.info(String.format("Address of %s changed from %s to %s",
+                            host, entry.address.getHostAddress(), address.getHostAddress()));
+                }
+                entry.address = address;
+            }
+        } catch (final UnknownHostException e) {
+            LOGGER.warn(String.format("Failed to resolve %s, keeping the last known address", host));
+        }
+        entry.resolvedAt = now;
+    }
+
+    private static final class Entry {
+        private volatile InetAddress address;
+        private volatile InetSocketAddress socketAddress;
+        private volatile long resolvedAt;
+        private volatile long lastUsed;
+    }
+}
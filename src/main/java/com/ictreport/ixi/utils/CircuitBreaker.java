@@ -0,0 +1,126 @@
+package com.ictreport.ixi.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stops calling a failing dependency for a while. After failureThreshold consecutive failures the
+ * breaker opens and rejects calls for a backoff that doubles with every failed attempt to close it,
+ * up to maxBackoff. Once the backoff elapsed a single trial call is let through (half open), its
+ * success closes the breaker. A trial that records no result within trialTimeout counts as failed,
+ * so a trial call that died without reporting back can't keep the breaker half open forever.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger("CircuitBreaker");
+    private final String name;
+    private final int failureThreshold;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final long trialTimeout;
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long backoff;
+    private long retryAt = 0;
+    private long trialStartedAt = 0;
+    private long opened = 0;
+    private long rejected = 0;
+
+    public CircuitBreaker(final String name, final int failureThreshold, final long initialBackoff,
+                          final long maxBackoff, final long trialTimeout) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.trialTimeout = trialTimeout;
+        this.backoff = initialBackoff;
+    }
+
+    public boolean allowRequest() {
+        return allowRequest(System.currentTimeMillis());
+    }
+
+    synchronized boolean allowRequest(final long now) {
+        if (state == State.HALF_OPEN && now - trialStartedAt >= trialTimeout) {
+            LOGGER.warn(String.format("%s trial call timed out, circuit open again", name));
+            recordFailure(now);
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now >= retryAt) {
+                    state = State.HALF_OPEN;
+                    trialStartedAt = now;
+                    return true;
+                }
+                break;
+            case HALF_OPEN:
+                // The trial call is still in flight
+                break;
+        }
+        rejected++;
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            LOGGER.info(String.format("%s recovered, circuit closed", name));
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        backoff = initialBackoff;
+    }
+
+    public void recordFailure() {
+        recordFailure(System.currentTimeMillis());
+    }
+
+    synchronized void recordFailure(final long now) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            backoff = Math.min(maxBackoff, backoff * 2);
+        } else if (state == State.CLOSED && consecutiveFailures < failureThreshold) {
+            return;
+        }
+        if (state == State.CLOSED) {
+            opened++;
+            LOGGER.warn(String.format("%s failed %d times in a row, circuit open for %dms",
+                    name, consecutiveFailures, backoff));
+        }
+        state = State.OPEN;
+        retryAt = now + backoff;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return how often the breaker opened from closed
+     */
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    /**
+     * @return calls rejected while the breaker was open
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %s, failures=%d opened=%d rejected=%d", name, state, consecutiveFailures, opened,
+                rejected);
+    }
+}
@@ -0,0 +1,211 @@
+package com.ictreport.ixi.utils;
+
+import com.ictreport.ixi.model.AddressAndStats;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Caches Ict REST API responses with a ttl per endpoint, info and config hardly ever change while
+ * the neighbor stats change every round. Concurrent requests for a stale endpoint share one call.
+ *
+ * Only successful responses are cached, and only for the port and password they were fetched with.
+ * While the Ict doesn't answer, for example while its circuit breaker is open, the last good response
+ * is served past its ttl.
+ */
+public class IctRestCache {
+
+    public interface Source {
+        JSONObject getInfo(int ictRestPort, String ictRestPassword);
+        JSONObject getConfig(int ictRestPort, String ictRestPassword);
+        List<AddressAndStats> getNeighbors(int ictRestPort, String ictRestPassword);
+    }
+
+    public static final Source REST_API = new Source() {
+        @Override
+        public JSONObject getInfo(final int ictRestPort, final String ictRestPassword) {
+            return IctRestCaller.getInfo(ictRestPort, ictRestPassword);
+        }
+
+        @Override
+        public JSONObject getConfig(final int ictRestPort, final String ictRestPassword) {
+            return IctRestCaller.getConfig(ictRestPort, ictRestPassword);
+        }
+
+        @Override
+        public List<AddressAndStats> getNeighbors(final int ictRestPort, final String ictRestPassword) {
+            return IctRestCaller.getNeighbors(ictRestPort, ictRestPassword);
+        }
+    };
+
+    private final Entry<JSONObject> info;
+    private final Entry<JSONObject> config;
+    private final Entry<List<AddressAndStats>> neighbors;
+
+    public IctRestCache(final Source source, final long infoTtl, final long configTtl, final long neighborsTtl) {
+        this.info = new Entry<JSONObject>(infoTtl) {
+            @Override
+            JSONObject fetch(final int ictRestPort, final String ictRestPassword) {
+                return source.getInfo(ictRestPort, ictRestPassword);
+            }
+        };
+        this.config = new Entry<JSONObject>(configTtl) {
+            @Override
+            JSONObject fetch(final int ictRestPort, final String ictRestPassword) {
+                return source.getConfig(ictRestPort, ictRestPassword);
+            }
+        };
+        this.neighbors = new Entry<List<AddressAndStats>>(neighborsTtl) {
+            @Override
+            List<AddressAndStats> fetch(final int ictRestPort, final String ictRestPassword) {
+                return source.getNeighbors(ictRestPort, ictRestPassword);
+            }
+        };
+    }
+
+    public JSONObject getInfo(final int ictRestPort, final String ictRestPassword) {
+        return info.get(ictRestPort, ictRestPassword, now());
+    }
+
+    public JSONObject getConfig(final int ictRestPort, final String ictRestPassword) {
+        return config.get(ictRestPort, ictRestPassword, now());
+    }
+
+    public List<AddressAndStats> getNeighbors(final int ictRestPort, final String ictRestPassword) {
+        return neighbors.get(ictRestPort, ictRestPassword, now());
+    }
+
+    /**
+     * @return whether a getNeighbors call would be answered from the cache
+     */
+    public boolean isNeighborsFresh(final int ictRestPort, final String ictRestPassword) {
+        return neighbors.isFresh(ictRestPort, ictRestPassword, now());
+    }
+
+    public void invalidate() {
+        info.invalidate();
+        config.invalidate();
+        neighbors.invalidate();
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * The freshness check reads an immutable snapshot and never waits. A fetch runs outside any lock,
+     * concurrent requests for the same credentials wait on the in-flight fetch instead of starting
+     * their own.
+     */
+    private abstract static class Entry<T> {
+        private final long ttl;
+        private volatile Snapshot<T> snapshot;
+        private FutureTask<T> inFlight;
+        private int inFlightPort;
+        private String inFlightPassword;
+
+        private Entry(final long ttl) {
+            this.ttl = ttl;
+        }
+
+        abstract T fetch(int ictRestPort, String ictRestPassword);
+
+        private T get(final int ictRestPort, final String ictRestPassword, final long now) {
+            final Snapshot<T> current = snapshot;
+            if (current != null && current.isFresh(ictRestPort, ictRestPassword, now, ttl)) {
+                return current.value;
+            }
+
+            FutureTask<T> task;
+            boolean owner = false;
+            synchronized (this) {
+                task = inFlight;
+                if (task == null || inFlightPort != ictRestPort || !ictRestPassword.equals(inFlightPassword)) {
+                    task = new FutureTask<>(new Callable<T>() {
+                        @Override
+                        public T call() {
+                            final T fetched = fetch(ictRestPort, ictRestPassword);
+                            if (fetched != null) {
+                                snapshot = new Snapshot<>(fetched, ictRestPort, ictRestPassword, now);
+                            }
+                            return fetched;
+                        }
+                    });
+                    inFlight = task;
+                    inFlightPort = ictRestPort;
+                    inFlightPassword = ictRestPassword;
+                    owner = true;
+                }
+            }
+            if (owner) {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (this) {
+                        if (inFlight == task) {
+                            inFlight = null;
+                        }
+                    }
+                }
+            }
+
+            final T fetched = await(task);
+            if (fetched == null) {
+                final Snapshot<T> last = snapshot;
+                return last != null && last.isFor(ictRestPort, ictRestPassword) ? last.value : null;
+            }
+            return fetched;
+        }
+
+        private boolean isFresh(final int ictRestPort, final String ictRestPassword, final long now) {
+            final Snapshot<T> current = snapshot;
+            return current != null && current.isFresh(ictRestPort, ictRestPassword, now, ttl);
+        }
+
+        private void invalidate() {
+            snapshot = null;
+        }
+
+        private static <T> T await(final FutureTask<T> task) {
+            try {
+                return task.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private static final class Snapshot<T> {
+        private final T value;
+        private final int ictRestPort;
+        private final String ictRestPassword;
+        private final long fetchedAt;
+
+        private Snapshot(final T value, final int ictRestPort, final String ictRestPassword, final long fetchedAt) {
+            this.value = value;
+            this.ictRestPort = ictRestPort;
+            this.ictRestPassword = ictRestPassword;
+            this.fetchedAt = fetchedAt;
+        }
+
+        private boolean isFor(final int ictRestPort, final String ictRestPassword) {
+            return this.ictRestPort == ictRestPort && ictRestPassword.equals(this.ictRestPassword);
+        }
+
+        private boolean isFresh(final int ictRestPort, final String ictRestPassword, final long now, final long ttl) {
+            return isFor(ictRestPort, ictRestPassword) && now - fetchedAt < ttl;
+        }
+    }
+}
@@ -1,29 +1,78 @@
 package com.ictreport.ixi.utils;
 
-import org.apache.commons.io.IOUtils;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.ictreport.ixi.model.Address;
+import com.ictreport.ixi.model.AddressAndStats;
+import com.ictreport.ixi.model.Stats;
 import org.apache.http.HttpEntity;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class IctRestCaller {
 
     private final static Logger LOGGER = LogManager.getLogger("IctRestCaller");
+    private final static int MAX_CONNECTIONS = 4;
+    private final static int CONNECT_TIMEOUT = 2000;
+    private final static int SOCKET_TIMEOUT = 5000;
+    // getInfo and getConfig answer from memory, getNeighbors serializes every neighbor's stats history
+    private final static int SHORT_SOCKET_TIMEOUT = 2000;
+    private final static int BREAKER_FAILURE_THRESHOLD = 3;
+    // Stands in for a missing or malformed stats value, counts and timestamps are never negative
+    private final static long MALFORMED = -1;
+    private final static long BREAKER_INITIAL_BACKOFF = TimeUnit.SECONDS.toMillis(5);
+    private final static long BREAKER_MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
+    // Well above connect, pool wait and socket timeout of a single call combined
+    private final static long BREAKER_TRIAL_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    private final static Map<String, Endpoint> ENDPOINTS = new HashMap<>();
+    private final static int CONNECTION_REQUEST_TIMEOUT = 2000;
+    private final static int VALIDATE_AFTER_INACTIVITY = 2000;
+    private final static long MAX_IDLE_TIME = 30000;
+    private static CloseableHttpClient httpClient;
+    private final static ResponseParser<String> STRING_PARSER = new ResponseParser<String>() {
+        @Override
+        public String parse(final HttpEntity entity) throws IOException {
+            return EntityUtils.toString(entity, "UTF-8");
+        }
+    };
+    private final static ResponseParser<List<AddressAndStats>> NEIGHBORS_PARSER =
+            new ResponseParser<List<AddressAndStats>>() {
+                @Override
+                public List<AddressAndStats> parse(final HttpEntity entity) throws IOException {
+                    try (Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)) {
+                        return parseNeighbors(reader);
+                    }
+                }
+            };
+
+    static {
+        ENDPOINTS.put("getInfo", new Endpoint("getInfo", SHORT_SOCKET_TIMEOUT));
+        ENDPOINTS.put("getConfig", new Endpoint("getConfig", SHORT_SOCKET_TIMEOUT));
+        ENDPOINTS.put("getNeighbors", new Endpoint("getNeighbors", SOCKET_TIMEOUT));
+    }
 
     public static JSONObject getInfo(final int ictRestPort, final String ictRestPassword) {
         LOGGER.debug("Fetching data from Ict REST API endpoint: /getInfo");
@@ -34,6 +83,20 @@ public class IctRestCaller {
         return null;
     }
 
+    /**
+     * Calls getInfo outside the circuit breaker, for checking credentials that aren't in use yet.
+     * The breaker belongs to the credentials the sync uses, a probe must neither be rejected by its
+     * backoff nor reset it.
+     */
+    public static JSONObject probeInfo(final int ictRestPort, final String ictRestPassword) {
+        LOGGER.debug("Probing Ict REST API endpoint: /getInfo");
+        String json = call("getInfo", ictRestPort, ictRestPassword, STRING_PARSER, false);
+        if (json != null) {
+            return new JSONObject(json);
+        }
+        return null;
+    }
+
     public static JSONObject getConfig(final int ictRestPort, final String ictRestPassword) {
         LOGGER.debug("Fetching data from Ict REST API endpoint: /getConfig");
         String json = call("getConfig", ictRestPort, ictRestPassword);
@@ -43,22 +106,231 @@ public class IctRestCaller {
         return null;
     }
 
-    public static JSONArray getNeighbors(final int ictRestPort, final String ictRestPassword) {
-        String json = call("getNeighbors", ictRestPort, ictRestPassword);
-        if (json != null) {
-            JSONObject rootObject =  new JSONObject(json);
-            return rootObject.getJSONArray("neighbors");
+    /**
+     * Streams the response instead of building a document of it, of every neighbor's stats history
+     * only the newest record is kept.
+     *
+     * @return the neighbors with their latest stats, or null if the call failed
+     */
+    public static List<AddressAndStats> getNeighbors(final int ictRestPort, final String ictRestPassword) {
+        LOGGER.debug("Fetching data from Ict REST API endpoint: /getNeighbors");
+        return call("getNeighbors", ictRestPort, ictRestPassword, NEIGHBORS_PARSER);
+    }
+
+    static List<AddressAndStats> parseNeighbors(final Reader reader) throws IOException {
+        final List<AddressAndStats> addressesAndStats = new LinkedList<>();
+        final JsonReader json = new JsonReader(reader);
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!json.nextName().equals("neighbors")) {
+                json.skipValue();
+                continue;
+            }
+            json.beginArray();
+            while (json.hasNext()) {
+                final AddressAndStats addressAndStats = parseNeighbor(json);
+                if (addressAndStats != null) {
+                    addressesAndStats.add(addressAndStats);
+                }
+            }
+            json.endArray();
         }
-        return null;
+        json.endObject();
+        return addressesAndStats;
+    }
+
+    /**
+     * Malformed values are skipped rather than thrown on, so one broken neighbor costs only itself
+     * and not the whole response.
+     *
+     * @return the neighbor, or null if its address or its latest stats are missing or malformed
+     */
+    private static AddressAndStats parseNeighbor(final JsonReader json) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return null;
+        }
+        String ictNeighborAddress = null;
+        Stats stats = null;
+        boolean malformedStats = false;
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if (name.equals("address") && json.peek() == JsonToken.STRING) {
+                ictNeighborAddress = json.nextString();
+            } else if (name.equals("stats") && json.peek() == JsonToken.BEGIN_ARRAY) {
+                try {
+                    stats = parseLatestStats(json);
+                } catch (final MalformedStatsException e) {
+                    malformedStats = true;
+                }
+            } else {
+                malformedStats |= name.equals("stats");
+                json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (ictNeighborAddress == null) {
+            return null;
+        }
+        if (malformedStats) {
+            LOGGER.warn(String.format("Skipped neighbor [%s] with malformed stats received from Ict REST API.",
+                    ictNeighborAddress));
+            return null;
+        }
+        try {
+            final Address address = Address.parse(ictNeighborAddress);
+            return stats != null ? new AddressAndStats(address, stats) : new AddressAndStats(address);
+        } catch (Exception e) {
+            e.printStackTrace();
+            LOGGER.warn(String.format(
+                    "Failed to parse InetSocketAddress from [%s] received from Ict REST API.",
+                    ictNeighborAddress
+            ));
+            return null;
+        }
+    }
+
+    /**
+     * Reads the history into primitives, so older records cost no allocations. Every record is read
+     * on its own, only the last one has to be complete.
+     *
+     * @return the last record of the stats array, or null if it was empty
+     * @throws MalformedStatsException if the last record lacks a field or has a malformed one, the
+     * array is consumed either way
+     */
+    private static Stats parseLatestStats(final JsonReader json) throws IOException, MalformedStatsException {
+        boolean any = false;
+        boolean complete = false;
+        long timestamp = 0;
+        int all = 0, newTx = 0, ignored = 0, invalid = 0, requested = 0;
+        json.beginArray();
+        while (json.hasNext()) {
+            any = true;
+            complete = false;
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            timestamp = MALFORMED;
+            all = newTx = ignored = invalid = requested = (int) MALFORMED;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "timestamp": timestamp = nextLong(json); break;
+                    case "all": all = nextInt(json); break;
+                    case "new": newTx = nextInt(json); break;
+                    case "ignored": ignored = nextInt(json); break;
+                    case "invalid": invalid = nextInt(json); break;
+                    case "requested": requested = nextInt(json); break;
+                    default: json.skipValue();
+                }
+            }
+            json.endObject();
+            complete = timestamp != MALFORMED && all != (int) MALFORMED && newTx != (int) MALFORMED
+                    && ignored != (int) MALFORMED && invalid != (int) MALFORMED && requested != (int) MALFORMED;
+        }
+        json.endArray();
+        if (any && !complete) {
+            throw new MalformedStatsException();
+        }
+        return any ? new Stats(timestamp, all, newTx, ignored, invalid, requested) : null;
+    }
+
+    /**
+     * @return the value, or MALFORMED if it is not an integer, in which case it is skipped
+     */
+    private static long nextLong(final JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NUMBER) {
+            try {
+                return json.nextLong();
+            } catch (final NumberFormatException e) {
+                // Not an integer, the value is still pending
+            }
+        }
+        json.skipValue();
+        return MALFORMED;
+    }
+
+    private static int nextInt(final JsonReader json) throws IOException {
+        final long value = nextLong(json);
+        return value >= 0 && value <= Integer.MAX_VALUE ? (int) value : (int) MALFORMED;
+    }
+
+    private static final class MalformedStatsException extends Exception {
+    }
+
+    /**
+     * @return the circuit breaker of the route, whose state tells whether the Ict REST API is reachable
+     */
+    public static CircuitBreaker getCircuitBreaker(final String route) {
+        final Endpoint endpoint = ENDPOINTS.get(route);
+        return endpoint != null ? endpoint.circuitBreaker() : null;
+    }
+
+    /**
+     * Closes the pooled client and its connections, a later call opens a new one.
+     */
+    public static synchronized void shutDown() {
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close Ict REST API client", e);
+            }
+            httpClient = null;
+        }
+    }
+
+    private static synchronized CloseableHttpClient httpClient() {
+        if (httpClient == null) {
+            final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(MAX_CONNECTIONS);
+            connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+            // Drop pooled connections the Ict closed while they were idle, before they are reused
+            connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+
+            httpClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectTimeout(CONNECT_TIMEOUT)
+                            .setSocketTimeout(SOCKET_TIMEOUT)
+                            .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+                            .build())
+                    .evictIdleConnections(MAX_IDLE_TIME, TimeUnit.MILLISECONDS)
+                    .build();
+        }
+        return httpClient;
     }
 
     private static String call(final String route, final int ictRestPort, final String ictRestPassword) {
-        //try {
+        return call(route, ictRestPort, ictRestPassword, STRING_PARSER);
+    }
+
+    private static <T> T call(final String route, final int ictRestPort, final String ictRestPassword,
+                              final ResponseParser<T> parser) {
+        return call(route, ictRestPort, ictRestPassword, parser, true);
+    }
+
+    /**
+     * @param guarded whether the call goes through the endpoint's circuit breaker
+     */
+    private static <T> T call(final String route, final int ictRestPort, final String ictRestPassword,
+                              final ResponseParser<T> parser, final boolean guarded) {
         final String endpoint = "http://localhost:" + ictRestPort + "/" + route;
+        final Endpoint settings = ENDPOINTS.get(route);
+        final CircuitBreaker circuitBreaker = guarded
+                ? settings.circuitBreaker(ictRestPort, ictRestPassword)
+                : settings.newCircuitBreaker();
+        if (!circuitBreaker.allowRequest()) {
+            LOGGER.debug("Skipped Ict REST API (" + endpoint + "), circuit open");
+            return null;
+        }
         LOGGER.debug("Fetching Ict REST API (" + endpoint + ")...");
 
-        final CloseableHttpClient httpclient = HttpClients.createDefault();
-        HttpPost httppost = new HttpPost(endpoint);
+        final HttpPost httppost = new HttpPost(endpoint);
+        httppost.setConfig(settings.requestConfig);
 
         try {
             // Request parameters and other properties.
@@ -69,35 +341,77 @@ public class IctRestCaller {
             LOGGER.error("Failed to set request params, error: UnsupportedEncodingException");
         }
 
-        //Execute and get the response.
-        CloseableHttpResponse response = null;
-        try {
-            response = httpclient.execute(httppost);
-        } catch (IOException e) {
-            LOGGER.error("Exception thrown when calling Ict REST API (" + endpoint + "), IOException");
-        }
-
-        if (response != null) {
-            int statusCode = response.getStatusLine().getStatusCode();
+        // Closing the response hands the connection back to the pool, the entity has to be consumed
+        // for it to be kept alive.
+        try (CloseableHttpResponse response = httpClient().execute(httppost)) {
+            final HttpEntity entity = response.getEntity();
+            final int statusCode = response.getStatusLine().getStatusCode();
             if (statusCode != 200) {
+                EntityUtils.consumeQuietly(entity);
+                circuitBreaker.recordFailure();
                 LOGGER.error("Failed to fetch details from Ict REST API (" + endpoint + "), status code: " + statusCode);
                 return null;
             }
 
-            HttpEntity entity = response.getEntity();
             if (entity != null) {
-                try (InputStream instream = entity.getContent()) {
-                    StringWriter writer = new StringWriter();
-                    IOUtils.copy(instream, writer, "UTF-8");
-                    final String json = writer.toString();
-                    LOGGER.debug("Successfully fetched details from " + endpoint);
-                    return json;
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    LOGGER.error("Failed to parse response from Ict REST API (" + endpoint + ").");
-                }
+                final T parsed = parser.parse(entity);
+                circuitBreaker.recordSuccess();
+                LOGGER.debug("Successfully fetched details from " + endpoint);
+                return parsed;
             }
+            circuitBreaker.recordSuccess();
+        } catch (IOException e) {
+            circuitBreaker.recordFailure();
+            LOGGER.error("Exception thrown when calling Ict REST API (" + endpoint + "), " + e.getClass().getSimpleName());
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+            e.printStackTrace();
+            LOGGER.error("Failed to parse response from Ict REST API (" + endpoint + ").");
         }
         return null;
     }
+
+    private static final class Endpoint {
+        private final String route;
+        private final RequestConfig requestConfig;
+        private CircuitBreaker circuitBreaker;
+        private int ictRestPort;
+        private String ictRestPassword;
+
+        private Endpoint(final String route, final int socketTimeout) {
+            this.route = route;
+            this.requestConfig = RequestConfig.custom()
+                    .setConnectTimeout(CONNECT_TIMEOUT)
+                    .setSocketTimeout(socketTimeout)
+                    .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+                    .build();
+            this.circuitBreaker = newCircuitBreaker();
+        }
+
+        /**
+         * Other credentials get a closed breaker, a fixed password must not wait for the backoff.
+         * Only guarded calls get here, so candidate credentials being validated don't reset it.
+         */
+        private synchronized CircuitBreaker circuitBreaker(final int ictRestPort, final String ictRestPassword) {
+            if (ictRestPort != this.ictRestPort || !ictRestPassword.equals(this.ictRestPassword)) {
+                this.ictRestPort = ictRestPort;
+                this.ictRestPassword = ictRestPassword;
+                circuitBreaker = newCircuitBreaker();
+            }
+            return circuitBreaker;
+        }
+
+        private synchronized CircuitBreaker circuitBreaker() {
+            return circuitBreaker;
+        }
+
+        private CircuitBreaker newCircuitBreaker() {
+            return new CircuitBreaker("Ict REST API /" + route, BREAKER_FAILURE_THRESHOLD,
+                    BREAKER_INITIAL_BACKOFF, BREAKER_MAX_BACKOFF, BREAKER_TRIAL_TIMEOUT);
+        }
+    }
+
+    private interface ResponseParser<T> {
+        T parse(HttpEntity entity) throws IOException;
+    }
 }
@@ -0,0 +1,172 @@
+package com.ictreport.ixi.utils;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer multi-consumer queue on a fixed array of slots. Producers and consumers
+ * claim slots with a single CAS on their cursor, every slot carries a sequence number telling
+ * whether it is free for the producer or published for a consumer of the current lap.
+ *
+ * Publishing never blocks, when the ring is full the overflow policy decides which element is
+ * dropped. Consumers can block in take() until an element is available.
+ */
+public class RingBuffer<E> {
+
+    public enum OverflowPolicy {
+        /** Reject the element being published, keep what is queued. */
+        DROP_NEWEST,
+        /** Evict the oldest queued element to make room for the new one. */
+        DROP_OLDEST
+    }
+
+    public interface DropHandler<E> {
+        /** Called with every element dropped on overflow, e.g. to recycle its resources. */
+        void dropped(E element);
+    }
+
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final DropHandler<E> dropHandler;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    // One permit per published element, lets consumers park instead of spinning on an empty ring.
+    private final Semaphore available = new Semaphore(0);
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong maxDepth = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public RingBuffer(final int capacity, final OverflowPolicy overflowPolicy, final DropHandler<E> dropHandler) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be within range 1-" + (1 << 30));
+        }
+        final int slots = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = slots - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.dropHandler = dropHandler;
+        this.elements = new AtomicReferenceArray<>(slots);
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the element itself was dropped
+     */
+    public boolean publish(final E element) {
+        while (!tryOffer(element)) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                drop(element);
+                return false;
+            }
+            final E oldest = poll();
+            if (oldest != null) {
+                drop(oldest);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the oldest element, or null if the ring is empty
+     */
+    public E poll() {
+        if (!available.tryAcquire()) {
+            return null;
+        }
+        return claim();
+    }
+
+    /**
+     * Waits until an element is available.
+     */
+    public E take() throws InterruptedException {
+        available.acquire();
+        return claim();
+    }
+
+    public int size() {
+        return available.availablePermits();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the highest number of queued elements observed
+     */
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return number of elements dropped because the ring was full
+     */
+    public long getOverflowed() {
+        return overflowed.get();
+    }
+
+    private boolean tryOffer(final E element) {
+        long position = tail.get();
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    available.release();
+                    updateMaxDepth();
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private E claim() {
+        // Holding a permit guarantees a published slot, only the race for it with other consumers remains.
+        long position = head.get();
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final E element = elements.get(index);
+                    elements.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                // The producer claimed the slot but hasn't published it yet.
+                Thread.yield();
+            }
+            position = head.get();
+        }
+    }
+
+    private void updateMaxDepth() {
+        final long depth = available.availablePermits();
+        long max = maxDepth.get();
+        while (depth > max && !maxDepth.compareAndSet(max, depth)) {
+            max = maxDepth.get();
+        }
+    }
+
+    private void drop(final E element) {
+        overflowed.incrementAndGet();
+        dropHandler.dropped(element);
+    }
+}
@@ -0,0 +1,242 @@
+package com.ictreport.ixi.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs periodic tasks on a small shared pool of daemon threads instead of one timer thread per task.
+ * Every task has its own start offset and may be jittered, so tasks with equal periods don't all fire
+ * at once. Each run is scheduled when the previous one finished, a slow run delays its own task only.
+ */
+public class TaskScheduler {
+
+    private static final Logger LOGGER = LogManager.getLogger("TaskScheduler");
+    private final String name;
+    private final int threads;
+    private final List<Task> tasks = Collections.synchronizedList(new ArrayList<Task>());
+    private ScheduledExecutorService executor;
+
+    public TaskScheduler(final String name, final int threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        final AtomicInteger count = new AtomicInteger();
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, name + " " + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+        synchronized (tasks) {
+            for (final Task task : tasks) {
+                task.scheduleNext(task.offset);
+            }
+        }
+    }
+
+    public synchronized void shutDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @param offset delay of the first run
+     * @param jitter every run is moved by a random amount within plus or minus jitter
+     */
+    public Task schedule(final String taskName, final Runnable runnable, final long offset, final long period,
+                         final long jitter) {
+        final Task task = new Task(taskName, runnable, offset, period, jitter);
+        tasks.add(task);
+        synchronized (this) {
+            if (executor != null) {
+                task.scheduleNext(offset);
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Spreads nodes running the same task across its period: the phase is derived from a stable key,
+     * such as the node's uuid, so it's the same on every restart but differs between nodes.
+     *
+     * @return offset within [0, period)
+     */
+    public static long phaseOf(final String key, final long period) {
+        if (period <= 0) {
+            return 0;
+        }
+        // Murmur3 finalizer, String.hashCode alone clusters for similar keys
+        long hash = key.hashCode();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return ((hash % period) + period) % period;
+    }
+
+    /**
+     * @return the delay moved by a random amount within plus or minus jitter, never negative
+     */
+    public static long jittered(final long delay, final long jitter, final Random random) {
+        if (jitter <= 0) {
+            return Math.max(0, delay);
+        }
+        final long offset = (long) ((random.nextDouble() * 2 - 1) * jitter);
+        return Math.max(0, delay + offset);
+    }
+
+    public List<Task> getTasks() {
+        synchronized (tasks) {
+            return new ArrayList<>(tasks);
+        }
+    }
+
+    public Task getTask(final String taskName) {
+        synchronized (tasks) {
+            for (final Task task : tasks) {
+                if (task.name.equals(taskName)) {
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized void submit(final Runnable runnable, final long delay, final Task task) {
+        if (executor != null && !task.cancelled) {
+            task.future = executor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public final class Task implements Runnable {
+        private final String name;
+        private final Runnable runnable;
+        private final long offset;
+        private volatile long period;
+        private volatile long jitter;
+        private volatile boolean cancelled = false;
+        private ScheduledFuture<?> future;
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Task(final String name, final Runnable runnable, final long offset, final long period,
+                     final long jitter) {
+            this.name = name;
+            this.runnable = runnable;
+            this.offset = offset;
+            this.period = period;
+            this.jitter = jitter;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            try {
+                runnable.run();
+            } catch (final RuntimeException e) {
+                failures.incrementAndGet();
+                e.printStackTrace();
+                LOGGER.warn(String.format("Task '%s' failed unexpectedly", name), e);
+            } finally {
+                record(System.nanoTime() - start);
+                scheduleNext(period);
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            synchronized (TaskScheduler.this) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+            tasks.remove(this);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getPeriod() {
+            return period;
+        }
+
+        /**
+         * Takes effect from the next run on.
+         */
+        public void setPeriod(final long period) {
+            this.period = period;
+        }
+
+        public long getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(final long jitter) {
+            this.jitter = jitter;
+        }
+
+        public long getRuns() {
+            return runs.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public long getAverageNanos() {
+            final long count = runs.get();
+            return count > 0 ? totalNanos.get() / count : 0;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        private void scheduleNext(final long delay) {
+            submit(this, jittered(delay, jitter, ThreadLocalRandom.current()), this);
+        }
+
+        private void record(final long nanos) {
+            runs.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: runs=%d failures=%d avg=%dus max=%dus", name, getRuns(), getFailures(),
+                    TimeUnit.NANOSECONDS.toMicros(getAverageNanos()), TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
+        }
+    }
+}
@@ -3,31 +3,56 @@ package org.iota.ict.ixi;
 import com.ictreport.ixi.ReportIxiContext;
 import com.ictreport.ixi.ReportIxiGossipListener;
 import com.ictreport.ixi.api.Api;
-import com.ictreport.ixi.model.Address;
 import com.ictreport.ixi.model.AddressAndStats;
 import com.ictreport.ixi.model.Neighbor;
-import com.ictreport.ixi.model.Stats;
+import com.ictreport.ixi.model.NeighborIndex;
+import com.ictreport.ixi.utils.AddressResolver;
 import com.ictreport.ixi.utils.ConfigurationMigrator;
 import com.ictreport.ixi.utils.Constants;
+import com.ictreport.ixi.utils.IctRestCache;
 import com.ictreport.ixi.utils.IctRestCaller;
 import com.ictreport.ixi.utils.Metadata;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.iota.ict.ixi.context.IxiContext;
 import org.iota.ict.utils.IOHelper;
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class ReportIxi extends IxiModule {
 
     private final static Logger LOGGER = LogManager.getLogger("ReportIxi");
+    private final static long ADDRESS_TTL = TimeUnit.MINUTES.toMillis(5);
+    // Longer than a single REST call may take, including connect and pool timeouts
+    private final static long SYNC_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private final static int SYNC_THREADS = 3;
+    private final static long ICT_INFO_TTL = TimeUnit.MINUTES.toMillis(10);
+    private final static long ICT_CONFIG_TTL = TimeUnit.MINUTES.toMillis(5);
+    // Shorter than any round, so every status report syncs fresh stats
+    private final static long ICT_NEIGHBORS_TTL = TimeUnit.SECONDS.toMillis(5);
+    private final IctRestCache ictRestCache = new IctRestCache(IctRestCache.REST_API, ICT_INFO_TTL, ICT_CONFIG_TTL,
+            ICT_NEIGHBORS_TTL);
+    private final AddressResolver addressResolver = new AddressResolver(ADDRESS_TTL);
     private final ReportIxiContext context;
     private Metadata metadata;
-    private final List<Neighbor> neighbors = new LinkedList<>();
+    // The list is replaced as a whole on every sync, readers never lock. The neighbors in it are
+    // shared between snapshots and updated in place.
+    private final AtomicReference<NeighborIndex> neighbors = new AtomicReference<>(NeighborIndex.EMPTY);
+    private final Object neighborsWriteLock = new Object();
     private Api api;
+    private volatile ExecutorService syncExecutor;
     public final Object waitingForUuid = new Object();
     private byte state = STATE_TERMINATED;
     private final static byte STATE_TERMINATED = 0;
@@ -67,6 +92,13 @@ public class ReportIxi extends IxiModule {
         state = STATE_TERMINATING;
         LOGGER.info("Terminating Report.ixi...");
         if (api != null) api.shutDown();
+        addressResolver.shutDown();
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+            syncExecutor = null;
+        }
+        ictRestCache.invalidate();
+        IctRestCaller.shutDown();
         try {
             super.terminate();
         } catch (IllegalStateException e) {
@@ -94,6 +126,17 @@ public class ReportIxi extends IxiModule {
 
         LOGGER.info(String.format("Report.ixi %s: Starting...", Constants.VERSION));
         metadata = new Metadata(Constants.METADATA_FILE);
+        addressResolver.start();
+        syncExecutor = Executors.newFixedThreadPool(SYNC_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Ict sync " + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
 
         LOGGER.info("Initiating API...");
         api = new Api(this);
@@ -130,10 +173,28 @@ public class ReportIxi extends IxiModule {
         return this.metadata;
     }
 
+    /**
+     * @return the current neighbors, an unmodifiable list that later syncs don't change. The neighbors
+     * themselves are live and keep being updated.
+     */
     public List<Neighbor> getNeighbors() {
-        synchronized (this.neighbors) {
-            return new LinkedList<>(this.neighbors);
-        }
+        return neighbors.get().getNeighbors();
+    }
+
+    /**
+     * @return the snapshot of the current neighbors with their index by report address, rebuilt on
+     * every neighbor sync
+     */
+    public NeighborIndex getNeighborIndex() {
+        return neighbors.get();
+    }
+
+    public IctRestCache getIctRestCache() {
+        return ictRestCache;
+    }
+
+    public AddressResolver getAddressResolver() {
+        return addressResolver;
     }
 
     public Api getApi() {
@@ -156,104 +217,167 @@ public class ReportIxi extends IxiModule {
         }
     }
 
+    /**
+     * Fetches config, info and neighbors from the Ict REST API concurrently and applies the responses
+     * together once all of them arrived, so the sync takes as long as the slowest call.
+     */
     public void syncIct() {
-        syncIctConfig();
-        syncIctInfo();
-        syncIctNeighbors();
+        final ExecutorService executor = syncExecutor;
+        if (executor == null) {
+            syncIctConfig();
+            syncIctInfo();
+            syncIctNeighbors();
+            return;
+        }
+
+        final int ictRestPort = getReportIxiContext().getIctRestPort();
+        final String ictRestPassword = getReportIxiContext().getIctRestPassword();
+        final List<Callable<Object>> fetches = new ArrayList<>();
+        fetches.add(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return ictRestCache.getConfig(ictRestPort, ictRestPassword);
+            }
+        });
+        fetches.add(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return ictRestCache.getInfo(ictRestPort, ictRestPassword);
+            }
+        });
+        fetches.add(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return ictRestCache.getNeighbors(ictRestPort, ictRestPassword);
+            }
+        });
+
+        final List<Future<Object>> responses;
+        try {
+            responses = executor.invokeAll(fetches, SYNC_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RejectedExecutionException e) {
+            // Terminating
+            return;
+        }
+
+        applyIctConfig((JSONObject) responseOf(responses.get(0), "getConfig"));
+        applyIctInfo((JSONObject) responseOf(responses.get(1), "getInfo"));
+        @SuppressWarnings("unchecked")
+        final List<AddressAndStats> neighbors = (List<AddressAndStats>) responseOf(responses.get(2), "getNeighbors");
+        applyIctNeighbors(neighbors);
+    }
+
+    private static Object responseOf(final Future<Object> future, final String route) {
+        if (future.isCancelled()) {
+            LOGGER.warn(String.format("Ict REST API call /%s timed out", route));
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            LOGGER.warn(String.format("Ict REST API call /%s failed unexpectedly", route), e.getCause());
+        }
+        return null;
     }
 
     public void syncIctConfig() {
-        final JSONObject response = IctRestCaller.getConfig(
+        applyIctConfig(ictRestCache.getConfig(
                 getReportIxiContext().getIctRestPort(),
                 getReportIxiContext().getIctRestPassword()
-        );
+        ));
+    }
 
+    private void applyIctConfig(final JSONObject response) {
         if (response != null) {
             getReportIxiContext().setIctRoundDuration(response.getNumber("round_duration").intValue());
         }
     }
 
     public void syncIctInfo() {
-        final JSONObject response = IctRestCaller.getInfo(
+        applyIctInfo(ictRestCache.getInfo(
                 getReportIxiContext().getIctRestPort(),
                 getReportIxiContext().getIctRestPassword()
-        );
+        ));
+    }
 
+    private void applyIctInfo(final JSONObject response) {
         if (response != null) {
             getReportIxiContext().setIctVersion(response.getString("version"));
         }
     }
 
     public void syncIctNeighbors() {
-        final JSONArray response = IctRestCaller.getNeighbors(
+        applyIctNeighbors(ictRestCache.getNeighbors(
                 getReportIxiContext().getIctRestPort(),
                 getReportIxiContext().getIctRestPassword()
-        );
-
-        final List<AddressAndStats> addressesAndStatsToSync = new LinkedList<>();
-        for (int i=0; response != null && i<response.length(); i++) {
-            final JSONObject ictNeighbor = (JSONObject)response.get(i);
-            final String ictNeighborAddress = ictNeighbor.getString("address");
+        ));
+    }
 
-            try {
-                final Address address = Address.parse(ictNeighborAddress);
-
-                final JSONArray statsArray = ictNeighbor.getJSONArray("stats");
-
-                if (statsArray.length() > 0) {
-                    final JSONObject stats = statsArray.getJSONObject(statsArray.length() - 1);
-
-                    addressesAndStatsToSync.add(new AddressAndStats(
-                            address,
-                            new Stats(
-                                stats.getNumber("timestamp").longValue(),
-                                stats.getInt("all"),
-                                stats.getInt("new"),
-                                stats.getInt("ignored"),
-                                stats.getInt("invalid"),
-                                stats.getInt("requested")
-                            )
-                    ));
-                } else {
-                    addressesAndStatsToSync.add(new AddressAndStats(address));
+    /**
+     * Syncs the neighbors in the background if the last sync is older than their ttl, callers keep
+     * working with the current neighbors meanwhile.
+     */
+    public void refreshIctNeighbors() {
+        final ExecutorService executor = syncExecutor;
+        if (executor == null || ictRestCache.isNeighborsFresh(getReportIxiContext().getIctRestPort(),
+                getReportIxiContext().getIctRestPassword())) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        syncIctNeighbors();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        LOGGER.warn("Neighbor refresh failed unexpectedly", e);
+                    }
                 }
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                LOGGER.warn(String.format(
-                        "Failed to parse InetSocketAddress from [%s] received from Ict REST API.",
-                        ictNeighborAddress
-                ));
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            // Terminating
         }
+    }
 
-        syncNeighbors(addressesAndStatsToSync, false);
+    private void applyIctNeighbors(final List<AddressAndStats> response) {
+        // Keep the known neighbors while the Ict can't be reached, rather than reporting none
+        if (response != null) {
+            syncNeighbors(response, false);
+        }
     }
 
     public void syncNeighbors(List<AddressAndStats> addressesAndStats, boolean applyReportPort) {
-
-        final List<Neighbor> keepNeighbors = new LinkedList<>();
-
-        for (AddressAndStats addressAndStats : addressesAndStats) {
-            Neighbor syncedNeighbor = null;
-            for (Neighbor neighbor : getNeighbors()) {
-                if (neighbor.isSyncableAddress(addressAndStats.getAddress())) {
-                    neighbor.syncAddressAndStats(addressAndStats, applyReportPort);
-                    syncedNeighbor = neighbor;
-                    break;
+        // Writers are serialized so no sync is lost, readers keep using the previous snapshot meanwhile.
+        synchronized (neighborsWriteLock) {
+            final List<Neighbor> currentNeighbors = getNeighbors();
+            final List<Neighbor> keepNeighbors = new ArrayList<>(addressesAndStats.size());
+
+            for (AddressAndStats addressAndStats : addressesAndStats) {
+                Neighbor syncedNeighbor = null;
+                for (Neighbor neighbor : currentNeighbors) {
+                    if (neighbor.isSyncableAddress(addressAndStats.getAddress())) {
+                        neighbor.syncAddressAndStats(addressAndStats, applyReportPort);
+                        syncedNeighbor = neighbor;
+                        break;
+                    }
                 }
-            }
 
-            if (syncedNeighbor != null) {
-                keepNeighbors.add(syncedNeighbor);
-            } else {
-                keepNeighbors.add(new Neighbor(addressAndStats.getAddress()));
+                if (syncedNeighbor != null) {
+                    keepNeighbors.add(syncedNeighbor);
+                } else {
+                    keepNeighbors.add(new Neighbor(addressAndStats.getAddress()));
+                }
             }
-        }
 
-        synchronized (this.neighbors) {
-            neighbors.clear();
-            neighbors.addAll(keepNeighbors);
+            // Addresses may have been updated in place, so the index is rebuilt even if the set is unchanged.
+            neighbors.set(NeighborIndex.of(keepNeighbors, addressResolver));
         }
     }
 }
@@ -0,0 +1,36 @@
+package com.ictreport.ixi.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.nio.ByteBuffer;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testBuffersAreRecycled() {
+        final BufferPool pool = new BufferPool(64, 1);
+
+        final ByteBuffer first = pool.acquire();
+        Assert.assertTrue(first.isDirect());
+        first.put((byte) 1);
+        pool.release(first);
+
+        final ByteBuffer second = pool.acquire();
+        Assert.assertSame(first, second);
+        Assert.assertEquals(0, second.position());
+        Assert.assertEquals(64, second.remaining());
+    }
+
+    @Test
+    public void testPoolIsBounded() {
+        final BufferPool pool = new BufferPool(64, 1);
+
+        final ByteBuffer first = pool.acquire();
+        final ByteBuffer second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+
+        Assert.assertSame(first, pool.acquire());
+        Assert.assertNotSame(second, pool.acquire());
+    }
+}
@@ -0,0 +1,213 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.DeliveryAckPayload;
+import com.ictreport.ixi.exchange.Payload;
+import com.ictreport.ixi.exchange.PingPayload;
+import com.ictreport.ixi.exchange.ReceivedPingPayload;
+import com.ictreport.ixi.exchange.SequencedPayload;
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class DeliveryWindowTest {
+
+    @Test
+    public void testWindowAndBacklog() {
+        final List<SequencedPayload> transmitted = new ArrayList<>();
+        final DeliveryWindow window = new DeliveryWindow(2, 1, 100, 1, collect(transmitted));
+
+        Assert.assertTrue(window.send(new PingPayload("1"), 0));
+        Assert.assertTrue(window.send(new PingPayload("2"), 0));
+        Assert.assertTrue(window.send(new PingPayload("3"), 0));
+        Assert.assertFalse(window.send(new PingPayload("4"), 0));
+        Assert.assertEquals(2, transmitted.size());
+        Assert.assertEquals(1, window.getBacklog());
+
+        // The cumulative ack frees the window for the backlog
+        window.acknowledge(1, 10);
+        Assert.assertEquals(3, transmitted.size());
+        Assert.assertEquals(3, transmitted.get(2).getSequence());
+
+        // Sequences 2 and 3 time out and are retransmitted, the timeout doubles once and then stays
+        window.retransmit(100);
+        Assert.assertEquals(4, transmitted.size());
+        window.retransmit(110);
+        Assert.assertEquals(5, transmitted.size());
+        window.retransmit(250);
+        Assert.assertEquals(5, transmitted.size());
+        window.retransmit(310);
+        Assert.assertEquals(7, transmitted.size());
+        window.retransmit(509);
+        Assert.assertEquals(7, transmitted.size());
+        window.retransmit(510);
+        Assert.assertEquals(9, transmitted.size());
+        Assert.assertEquals(2, window.getInFlight());
+
+        window.acknowledge(3, 520);
+        Assert.assertEquals(0, window.getInFlight());
+        Assert.assertEquals(3, window.getDelivered());
+        Assert.assertEquals(6, window.getRetransmitted());
+        Assert.assertEquals(1, window.getLost());
+    }
+
+    @Test
+    public void testIgnoresAckBeyondSent() {
+        final List<SequencedPayload> transmitted = new ArrayList<>();
+        final DeliveryWindow window = new DeliveryWindow(16, 256, 100, 5, collect(transmitted));
+
+        window.send(new PingPayload("1"), 0);
+        window.send(new PingPayload("2"), 0);
+        window.acknowledge(1000, 10);
+        Assert.assertEquals(2, window.getInFlight());
+        Assert.assertEquals(0, window.getDelivered());
+
+        window.acknowledge(2, 10);
+        Assert.assertEquals(0, window.getInFlight());
+        Assert.assertEquals(2, window.getDelivered());
+    }
+
+    @Test
+    public void testKeepsRetransmittingOldestUnacknowledged() {
+        final List<SequencedPayload> transmitted = new ArrayList<>();
+        final DeliveryWindow window = new DeliveryWindow(16, 256, 100, 5, collect(transmitted));
+
+        for (int i = 0; i < 4; i++) {
+            window.send(new PingPayload(String.valueOf(i)), 0);
+        }
+        // Every datagram of the first payload is lost well past 5 retransmits, the receiver holds
+        // the later ones but can't acknowledge past the gap.
+        long now = 0;
+        int firstAttempts = 1;
+        while (firstAttempts <= 8) {
+            now += 100;
+            final int before = transmitted.size();
+            window.retransmit(now);
+            for (final SequencedPayload sequencedPayload : transmitted.subList(before, transmitted.size())) {
+                if (sequencedPayload.getSequence() == 1) {
+                    firstAttempts++;
+                }
+            }
+        }
+        Assert.assertEquals(4, window.getInFlight());
+        Assert.assertEquals(0, window.getLost());
+
+        // The next retransmit of the first payload gets through, everything is acknowledged at once
+        window.acknowledge(4, now);
+        window.send(new PingPayload("4"), now);
+        window.acknowledge(5, now);
+        Assert.assertEquals(5, window.getDelivered());
+        Assert.assertEquals(0, window.getInFlight());
+        Assert.assertEquals(0, window.getLost());
+    }
+
+    @Test
+    public void testLossyLinkToLocalRcs() throws Exception {
+        final int payloads = 200;
+        final DatagramSocket rcs = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        final DatagramSocket node = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        rcs.setSoTimeout(20);
+        node.setSoTimeout(1);
+        final Random random = new Random(42);
+        final Map<Integer, String> received = Collections.synchronizedMap(new HashMap<Integer, String>());
+
+        final DeliveryWindow window = new DeliveryWindow(16, payloads, 50, 5, new DeliveryWindow.Transmitter() {
+            @Override
+            public void transmit(final SequencedPayload sequencedPayload) {
+                // The link loses a third of the datagrams on the way to the RCS.
+                if (random.nextInt(3) == 0) {
+                    return;
+                }
+                final byte[] data = Payload.encode(sequencedPayload, 1);
+                try {
+                    node.send(new DatagramPacket(data, data.length, rcs.getLocalSocketAddress()));
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        final Thread rcsStandIn = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runRcsStandIn(rcs, received, payloads);
+            }
+        });
+        rcsStandIn.start();
+
+        for (int i = 0; i < payloads; i++) {
+            Assert.assertTrue(window.send(new ReceivedPingPayload("node", new PingPayload("ping " + i)),
+                    System.currentTimeMillis()));
+        }
+
+        final byte[] buffer = new byte[1024];
+        final long deadline = System.currentTimeMillis() + 20000;
+        while (window.getDelivered() < payloads && System.currentTimeMillis() < deadline) {
+            try {
+                final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                node.receive(packet);
+                final Payload ack = Payload.decode(packet.getData(), packet.getOffset(), packet.getLength());
+                window.acknowledge(((DeliveryAckPayload) ack).getSequence(), System.currentTimeMillis());
+            } catch (final SocketTimeoutException e) {
+                window.retransmit(System.currentTimeMillis());
+            }
+        }
+        rcsStandIn.interrupt();
+        rcsStandIn.join(5000);
+        rcs.close();
+        node.close();
+
+        Assert.assertEquals(payloads, window.getDelivered());
+        Assert.assertEquals(0, window.getLost());
+        Assert.assertTrue(window.getRetransmitted() > 0);
+        for (int i = 0; i < payloads; i++) {
+            Assert.assertEquals("ping " + i, received.get(i + 1));
+        }
+    }
+
+    /**
+     * Acks cumulatively like the RCS: the highest sequence number up to which nothing is missing.
+     */
+    private static void runRcsStandIn(final DatagramSocket rcs, final Map<Integer, String> received,
+                                      final int payloads) {
+        final byte[] buffer = new byte[1024];
+        int delivered = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                rcs.receive(packet);
+                final SequencedPayload sequencedPayload = (SequencedPayload)
+                        Payload.decode(packet.getData(), packet.getOffset(), packet.getLength());
+                received.put(sequencedPayload.getSequence(),
+                        ((ReceivedPingPayload) sequencedPayload.getPayload()).getPingPayload().getMessage());
+                while (delivered < payloads && received.containsKey(delivered + 1)) {
+                    delivered++;
+                }
+                final byte[] ack = Payload.encode(new DeliveryAckPayload(delivered), 1);
+                rcs.send(new DatagramPacket(ack, ack.length, packet.getSocketAddress()));
+            } catch (final SocketTimeoutException e) {
+                // Poll the interrupt flag
+            } catch (final IOException e) {
+                return;
+            }
+        }
+    }
+
+    private static DeliveryWindow.Transmitter collect(final List<SequencedPayload> transmitted) {
+        return new DeliveryWindow.Transmitter() {
+            @Override
+            public void transmit(final SequencedPayload sequencedPayload) {
+                transmitted.add(sequencedPayload);
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.PingPayload;
+import com.ictreport.ixi.exchange.ReceivedPingPayload;
+import com.ictreport.ixi.exchange.StatusPayload;
+import org.junit.Assert;
+import org.junit.Test;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class OutboundQueueTest {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 14265);
+
+    @Test
+    public void testPolicies() throws InterruptedException {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch written = new CountDownLatch(3);
+        final OutboundQueue queue = new OutboundQueue(2, 50, new OutboundQueue.Writer() {
+            @Override
+            public void write(final OutboundQueue.Outbound outbound) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.countDown();
+            }
+        });
+        queue.start();
+
+        // The first outbound is taken by the writer, which then stalls, the next two fill the queue.
+        Assert.assertTrue(queue.offer(ping()));
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(queue.offer(ping()));
+        Assert.assertTrue(queue.offer(ping()));
+
+        Assert.assertFalse(queue.offer(ping()));
+        Assert.assertEquals(1, queue.getDropped(ReceivedPingPayload.class));
+
+        // Blocking payloads wait for the timeout before they are dropped.
+        final long start = System.nanoTime();
+        Assert.assertFalse(queue.offer(new OutboundQueue.Outbound(StatusPayload.class, null, ADDRESS, 0, false)));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(1, queue.getDropped(StatusPayload.class));
+        Assert.assertEquals(2, queue.getDropped());
+
+        release.countDown();
+        Assert.assertTrue(written.await(5, TimeUnit.SECONDS));
+        queue.shutDown();
+        Assert.assertTrue(queue.getMaxQueueDepth() >= 2);
+        Assert.assertTrue(queue.getMaxLatencyNanos() >= queue.getAverageLatencyNanos());
+    }
+
+    @Test
+    public void testPolicyOf() {
+        Assert.assertEquals(OutboundQueue.Policy.DROP, OutboundQueue.policyOf(PingPayload.class));
+        Assert.assertEquals(OutboundQueue.Policy.BLOCK, OutboundQueue.policyOf(StatusPayload.class));
+    }
+
+    private static OutboundQueue.Outbound ping() {
+        final ReceivedPingPayload payload = new ReceivedPingPayload("abc", new PingPayload("ping"));
+        return new OutboundQueue.Outbound(payload.getClass(), payload, ADDRESS, 0, false);
+    }
+}
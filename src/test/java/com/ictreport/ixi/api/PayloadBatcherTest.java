@@ -0,0 +1,93 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.EnvelopePayload;
+import com.ictreport.ixi.exchange.Fragments;
+import com.ictreport.ixi.exchange.Payload;
+import com.ictreport.ixi.exchange.PingPayload;
+import com.ictreport.ixi.exchange.ReceivedPingPayload;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PayloadBatcherTest {
+
+    @Test
+    public void testSizeBoundedFlush() {
+        final List<Payload> sent = new ArrayList<>();
+        final PayloadBatcher batcher = new PayloadBatcher(3, sink(sent));
+
+        batcher.add(new ReceivedPingPayload("abc", new PingPayload("1")));
+        batcher.add(new ReceivedPingPayload("abc", new PingPayload("2")));
+        Assert.assertEquals(0, sent.size());
+
+        batcher.add(new ReceivedPingPayload("abc", new PingPayload("3")));
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(3, ((EnvelopePayload) sent.get(0)).getPayloads().size());
+    }
+
+    @Test
+    public void testByteBoundedFlush() {
+        final List<Payload> sent = new ArrayList<>();
+        final PayloadBatcher batcher = new PayloadBatcher(16, Fragments.MAX_DATAGRAM_LENGTH - 128,
+                new PayloadBatcher.Sizer() {
+                    @Override
+                    public int sizeOf(final Payload payload) {
+                        return Payload.encode(payload, 0).length;
+                    }
+                }, sink(sent));
+
+        for (int i = 0; i < 16; i++) {
+            batcher.add(new ReceivedPingPayload("abcdefghijklmnopqrstuvwxyz", new PingPayload(String.valueOf(i))));
+        }
+        batcher.flush();
+
+        Assert.assertTrue(sent.size() > 1);
+        int total = 0;
+        for (final Payload payload : sent) {
+            Assert.assertTrue(Payload.encode(payload, 0).length <= Fragments.MAX_DATAGRAM_LENGTH);
+            total += payload instanceof EnvelopePayload ? ((EnvelopePayload) payload).getPayloads().size() : 1;
+        }
+        Assert.assertEquals(16, total);
+    }
+
+    @Test
+    public void testTimedFlush() {
+        final List<Payload> sent = new ArrayList<>();
+        final PayloadBatcher batcher = new PayloadBatcher(3, sink(sent));
+
+        batcher.flush();
+        Assert.assertEquals(0, sent.size());
+
+        // A single payload isn't wrapped.
+        batcher.add(new PingPayload("1"));
+        batcher.flush();
+        Assert.assertEquals(1, sent.size());
+        Assert.assertTrue(sent.get(0) instanceof PingPayload);
+    }
+
+    @Test
+    public void testEnvelopeEncoding() {
+        final List<Payload> payloads = new ArrayList<>();
+        payloads.add(new ReceivedPingPayload("abc", new PingPayload("1")));
+        payloads.add(new PingPayload("2"));
+        final EnvelopePayload envelopePayload = new EnvelopePayload(payloads);
+
+        for (int wireVersion = 0; wireVersion <= 1; wireVersion++) {
+            final byte[] data = Payload.encode(envelopePayload, wireVersion);
+            final EnvelopePayload decoded = (EnvelopePayload) Payload.decode(data, 0, data.length);
+            Assert.assertEquals(2, decoded.getPayloads().size());
+            Assert.assertEquals("1", ((ReceivedPingPayload) decoded.getPayloads().get(0)).getPingPayload().getMessage());
+            Assert.assertEquals("2", ((PingPayload) decoded.getPayloads().get(1)).getMessage());
+        }
+    }
+
+    private static PayloadBatcher.Sink sink(final List<Payload> sent) {
+        return new PayloadBatcher.Sink() {
+            @Override
+            public void send(final Payload payload) {
+                sent.add(payload);
+            }
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.ictreport.ixi.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testBurstAndRefill() {
+        final RateLimiter rateLimiter = new RateLimiter(2, 3, 16);
+        final long now = 0;
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(rateLimiter.tryAcquire("a", now));
+        }
+        Assert.assertFalse(rateLimiter.tryAcquire("a", now));
+        // Sources don't share buckets
+        Assert.assertTrue(rateLimiter.tryAcquire("b", now));
+
+        // Two tokens per second
+        Assert.assertTrue(rateLimiter.tryAcquire("a", now + TimeUnit.MILLISECONDS.toNanos(500)));
+        Assert.assertFalse(rateLimiter.tryAcquire("a", now + TimeUnit.MILLISECONDS.toNanos(600)));
+
+        // Refilling stops at the burst size
+        final long later = now + TimeUnit.MINUTES.toNanos(1);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(rateLimiter.tryAcquire("a", later));
+        }
+        Assert.assertFalse(rateLimiter.tryAcquire("a", later));
+    }
+}
@@ -0,0 +1,92 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.Fragments;
+import com.ictreport.ixi.exchange.Payload;
+import com.ictreport.ixi.exchange.PingPayload;
+import org.junit.Assert;
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ReassemblerTest {
+
+    @Test
+    public void testReassembleOutOfOrder() {
+        final String message = longMessage(3000);
+        final List<ByteBuffer> fragments = fragment(Payload.encode(new PingPayload(message), 1), 7);
+        Assert.assertEquals(3, fragments.size());
+        Collections.shuffle(fragments, new Random(1));
+
+        final Reassembler reassembler = new Reassembler(64 * 1024, 1000);
+        ByteBuffer datagram = null;
+        for (final ByteBuffer fragment : fragments) {
+            Assert.assertTrue(Fragments.isFragment(fragment));
+            Assert.assertTrue(fragment.remaining() <= Fragments.MAX_DATAGRAM_LENGTH);
+            Assert.assertTrue(Payload.isWellFormed(fragment));
+            Assert.assertNull(datagram);
+            datagram = reassembler.add("neighbor", fragment, 0);
+        }
+
+        final Payload payload = Payload.decode(datagram);
+        if (payload instanceof PingPayload) {
+            Assert.assertEquals(message, ((PingPayload) payload).getMessage());
+        } else {
+            Assert.fail("Testing polymorphism object failed.");
+        }
+        Assert.assertEquals(1, reassembler.getCompleted());
+        Assert.assertEquals(0, reassembler.getPendingBytes());
+    }
+
+    @Test
+    public void testTimeout() {
+        final List<ByteBuffer> fragments = fragment(Payload.encode(new PingPayload(longMessage(2000)), 0), 1);
+        final Reassembler reassembler = new Reassembler(64 * 1024, 1000);
+
+        Assert.assertNull(reassembler.add("neighbor", fragments.get(0), 0));
+        Assert.assertTrue(reassembler.getPendingBytes() > 0);
+        // The missing fragment arrives too late.
+        Assert.assertNull(reassembler.add("neighbor", fragments.get(1), 1000));
+        Assert.assertEquals(1, reassembler.getDiscarded());
+        Assert.assertEquals(0, reassembler.getCompleted());
+    }
+
+    @Test
+    public void testMemoryBound() {
+        final Reassembler reassembler = new Reassembler(2 * Fragments.MAX_DATA_LENGTH, 1000);
+        final List<ByteBuffer> first = fragment(Payload.encode(new PingPayload(longMessage(2000)), 0), 1);
+        final List<ByteBuffer> second = fragment(Payload.encode(new PingPayload(longMessage(2000)), 0), 2);
+
+        reassembler.add("neighbor", first.get(0), 0);
+        reassembler.add("neighbor", second.get(0), 0);
+        Assert.assertNull(reassembler.add("neighbor", second.get(1), 0));
+        Assert.assertTrue(reassembler.getPendingBytes() <= 2 * Fragments.MAX_DATA_LENGTH);
+
+        // The oldest incomplete datagram was evicted to make room.
+        Assert.assertNull(reassembler.add("neighbor", first.get(1), 0));
+        Assert.assertTrue(reassembler.getDiscarded() > 0);
+    }
+
+    private static List<ByteBuffer> fragment(final byte[] data, final int messageId) {
+        final ByteBuffer datagram = ByteBuffer.wrap(data);
+        final int count = Fragments.countFor(datagram.remaining());
+        final List<ByteBuffer> fragments = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            final ByteBuffer fragment = ByteBuffer.allocate(Fragments.MAX_DATAGRAM_LENGTH);
+            Fragments.write(fragment, messageId, index, count, datagram);
+            fragment.flip();
+            fragments.add(fragment);
+        }
+        return fragments;
+    }
+
+    private static String longMessage(final int length) {
+        final StringBuilder message = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            message.append((char) ('a' + i % 26));
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.utils.TaskScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class SenderScheduleTest {
+
+    private static final int NODES = 500;
+    private static final int PERIODS = 3;
+
+    @Test
+    public void testPhaseIsStablePerNode() {
+        final String uuid = UUID.randomUUID().toString();
+        Assert.assertEquals(Sender.pingOffset(uuid), Sender.pingOffset(uuid));
+        Assert.assertTrue(Sender.pingOffset(uuid) < TimeUnit.SECONDS.toMillis(40) + Sender.PING_INTERVAL);
+        Assert.assertTrue(Sender.statusOffset(uuid, 60000) < TimeUnit.SECONDS.toMillis(20) + 60000);
+    }
+
+    /**
+     * A fleet restarted at the same instant, pinging a local RCS stand-in that counts arrivals per second.
+     */
+    @Test
+    public void testFleetRestartSpreadsPingArrivals() {
+        final Random random = new Random(42);
+        final RcsStandIn rcs = new RcsStandIn(Sender.PING_INTERVAL * (PERIODS + 1));
+
+        for (int node = 0; node < NODES; node++) {
+            final String uuid = new UUID(random.nextLong(), random.nextLong()).toString();
+            long sentAt = TaskScheduler.jittered(Sender.pingOffset(uuid), Sender.PING_JITTER, random);
+            for (int period = 0; period < PERIODS; period++) {
+                rcs.arrive(sentAt);
+                sentAt += TaskScheduler.jittered(Sender.PING_INTERVAL, Sender.PING_JITTER, random);
+            }
+        }
+
+        // In lockstep all NODES pings of a period arrive within the same second.
+        final double average = (double) NODES / TimeUnit.MILLISECONDS.toSeconds(Sender.PING_INTERVAL);
+        Assert.assertEquals(NODES * PERIODS, rcs.total);
+        Assert.assertTrue("Peak of " + rcs.peak() + " pings per second", rcs.peak() <= 8 * average);
+    }
+
+    private static final class RcsStandIn {
+        private final int[] arrivalsPerSecond;
+        private int total = 0;
+
+        private RcsStandIn(final long duration) {
+            arrivalsPerSecond = new int[(int) TimeUnit.MILLISECONDS.toSeconds(duration) + 1];
+        }
+
+        private void arrive(final long at) {
+            arrivalsPerSecond[(int) TimeUnit.MILLISECONDS.toSeconds(at)]++;
+            total++;
+        }
+
+        private int peak() {
+            int peak = 0;
+            for (final int arrivals : arrivalsPerSecond) {
+                peak = Math.max(peak, arrivals);
+            }
+            return peak;
+        }
+    }
+}
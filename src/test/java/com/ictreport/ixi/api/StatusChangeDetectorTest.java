@@ -0,0 +1,30 @@
+package com.ictreport.ixi.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.Arrays;
+
+public class StatusChangeDetectorTest {
+
+    @Test
+    public void testSkipsUnchangedReportsUntilHeartbeat() {
+        final StatusChangeDetector detector = new StatusChangeDetector(300);
+
+        Assert.assertTrue(detector.shouldReport(Arrays.<Object>asList("abc", 1L, 10), 0));
+        detector.reported(Arrays.<Object>asList("abc", 1L, 10), 0);
+        Assert.assertFalse(detector.shouldReport(Arrays.<Object>asList("abc", 1L, 10), 100));
+        Assert.assertTrue(detector.shouldReport(Arrays.<Object>asList("abc", 2L, 12), 200));
+        detector.reported(Arrays.<Object>asList("abc", 2L, 12), 200);
+        Assert.assertFalse(detector.shouldReport(Arrays.<Object>asList("abc", 2L, 12), 499));
+        // Heartbeat after maxSilence without a report
+        Assert.assertTrue(detector.shouldReport(Arrays.<Object>asList("abc", 2L, 12), 500));
+        Assert.assertEquals(2, detector.getSkipped());
+
+        // A report that was never written doesn't suppress the next one
+        Assert.assertTrue(detector.shouldReport(Arrays.<Object>asList("abc", 3L, 14), 600));
+        Assert.assertTrue(detector.shouldReport(Arrays.<Object>asList("abc", 3L, 14), 700));
+
+        detector.reset();
+        Assert.assertTrue(detector.shouldReport(Arrays.<Object>asList("abc", 2L, 12), 510));
+    }
+}
@@ -0,0 +1,90 @@
+package com.ictreport.ixi.api;
+
+import com.ictreport.ixi.exchange.NeighborPayload;
+import com.ictreport.ixi.exchange.Payload;
+import com.ictreport.ixi.exchange.StatusDeltaPayload;
+import com.ictreport.ixi.exchange.StatusPayload;
+import com.ictreport.ixi.utils.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class StatusDeltaTrackerTest {
+
+    @Test
+    public void testKeyframeUntilAcknowledged() {
+        final StatusDeltaTracker tracker = new StatusDeltaTracker(3);
+
+        final Payload first = tracker.nextReport(status(43, neighbor("abc", 10), neighbor("def", 20)));
+        final Payload second = tracker.nextReport(status(43, neighbor("abc", 10), neighbor("def", 20)));
+        Assert.assertTrue(first instanceof StatusPayload);
+        Assert.assertTrue(second instanceof StatusPayload);
+
+        // Acknowledging an outdated keyframe must not enable deltas.
+        tracker.acknowledge(((StatusPayload) first).getSequence());
+        Assert.assertTrue(tracker.nextReport(status(43, neighbor("abc", 10))) instanceof StatusPayload);
+    }
+
+    @Test
+    public void testDeltaAgainstAcknowledgedKeyframe() {
+        final StatusDeltaTracker tracker = new StatusDeltaTracker(3);
+
+        final StatusPayload keyframe = (StatusPayload) tracker.nextReport(
+                status(43, neighbor("abc", 10), neighbor("def", 20)));
+        tracker.acknowledge(keyframe.getSequence());
+
+        final Payload report = tracker.nextReport(status(44, neighbor("abc", 10), neighbor("ghi", 30)));
+        if (report instanceof StatusDeltaPayload) {
+            final StatusDeltaPayload delta = (StatusDeltaPayload) report;
+            Assert.assertEquals(keyframe.getSequence().intValue(), delta.getKeyframe());
+            Assert.assertNull(delta.getName());
+            Assert.assertNull(delta.getIctRoundDuration());
+            Assert.assertEquals(Integer.valueOf(44), delta.getSystemLoadAverage());
+            Assert.assertEquals(1, delta.getNeighbors().size());
+            Assert.assertEquals("ghi", delta.getNeighbors().get(0).getUuid());
+            Assert.assertEquals(Collections.singletonList("def"), delta.getRemovedNeighbors());
+        } else {
+            Assert.fail("Expected a delta after the keyframe was acknowledged.");
+        }
+
+        // Survives the wire in both formats.
+        final byte[] data = Payload.encode(report, 1);
+        Assert.assertTrue(Payload.decode(data, 0, data.length) instanceof StatusDeltaPayload);
+    }
+
+    @Test
+    public void testPeriodicKeyframe() {
+        final StatusDeltaTracker tracker = new StatusDeltaTracker(2);
+
+        final StatusPayload keyframe = (StatusPayload) tracker.nextReport(status(43, neighbor("abc", 10)));
+        tracker.acknowledge(keyframe.getSequence());
+
+        Assert.assertTrue(tracker.nextReport(status(43, neighbor("abc", 10))) instanceof StatusDeltaPayload);
+        Assert.assertTrue(tracker.nextReport(status(43, neighbor("abc", 11))) instanceof StatusDeltaPayload);
+        Assert.assertTrue(tracker.nextReport(status(43, neighbor("abc", 12))) instanceof StatusPayload);
+    }
+
+    @Test
+    public void testKeyframeWithoutNeighborUuids() {
+        final StatusDeltaTracker tracker = new StatusDeltaTracker(3);
+
+        final StatusPayload keyframe = (StatusPayload) tracker.nextReport(status(43, neighbor("abc", 10)));
+        tracker.acknowledge(keyframe.getSequence());
+
+        Assert.assertTrue(tracker.nextReport(status(43, neighbor("abc", 10), neighbor(null, 20)))
+                instanceof StatusPayload);
+    }
+
+    private static StatusPayload status(final int systemLoadAverage, final NeighborPayload... neighbors) {
+        final List<NeighborPayload> neighborPayloads = new ArrayList<>(Arrays.asList(neighbors));
+        return new StatusPayload("xyz", "ict (ict-1)", "0.5", Constants.VERSION, 60000,
+                neighborPayloads, systemLoadAverage);
+    }
+
+    private static NeighborPayload neighbor(final String uuid, final int all) {
+        return new NeighborPayload(1546300800000L, uuid, all, 1, 2, 3, 4);
+    }
+}
@@ -0,0 +1,107 @@
+package com.ictreport.ixi.exchange;
+
+import com.ictreport.ixi.utils.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BinaryCodecTest {
+
+    @Test
+    public void testStatusPayload() {
+        final List<NeighborPayload> neighbors = new ArrayList<>();
+        neighbors.add(new NeighborPayload(1546300800000L, "abc", 10, 20, 30, 40, 50));
+        neighbors.add(new NeighborPayload(null, null, 11, 21, 31, 41, 51));
+
+        final StatusPayload statusPayload = new StatusPayload("xyz", "ict \u00fcnicode (ict-1)",
+                "0.5", Constants.VERSION, 60000, neighbors, 43);
+
+        final byte[] data = Payload.encode(statusPayload, BinaryCodec.VERSION);
+        Assert.assertTrue(data.length < Payload.encode(statusPayload, 0).length);
+
+        final Payload deserializedPayload = Payload.decode(data, 0, data.length);
+
+        if (deserializedPayload instanceof StatusPayload) {
+            final StatusPayload deserializedStatusPayload = (StatusPayload) deserializedPayload;
+            Assert.assertEquals("xyz", deserializedStatusPayload.getUuid());
+            Assert.assertEquals("ict \u00fcnicode (ict-1)", deserializedStatusPayload.getName());
+            Assert.assertEquals(60000, deserializedStatusPayload.getIctRoundDuration());
+            Assert.assertEquals(2, deserializedStatusPayload.getNeighbors().size());
+            Assert.assertEquals(Long.valueOf(1546300800000L), deserializedStatusPayload.getNeighbors().get(0).getTimestamp());
+            Assert.assertNull(deserializedStatusPayload.getNeighbors().get(1).getTimestamp());
+            Assert.assertEquals(51, deserializedStatusPayload.getNeighbors().get(1).getRequested());
+            Assert.assertEquals(43, deserializedStatusPayload.getSystemLoadAverage());
+        } else {
+            Assert.fail("Binary decoding of polymorphism object failed.");
+        }
+    }
+
+    @Test
+    public void testReceivedPingPayload() {
+        final ReceivedPingPayload receivedPingPayload = new ReceivedPingPayload("abc", new PingPayload("def"));
+        final byte[] data = Payload.encode(receivedPingPayload, BinaryCodec.VERSION);
+        final Payload deserializedPayload = Payload.decode(data, 0, data.length);
+
+        if (deserializedPayload instanceof ReceivedPingPayload) {
+            final ReceivedPingPayload deserializedReceivedPingPayload = (ReceivedPingPayload) deserializedPayload;
+            Assert.assertEquals("abc", deserializedReceivedPingPayload.getUuid());
+            Assert.assertEquals("def", deserializedReceivedPingPayload.getPingPayload().getMessage());
+        } else {
+            Assert.fail("Binary decoding of polymorphism object failed.");
+        }
+    }
+
+    @Test
+    public void testNegotiation() {
+        final String legacyJson = "{\"type\":\"MetadataPayload\",\"uuid\":\"abc\",\"reportIxiVersion\":\"0.5.1\"}";
+        final MetadataPayload legacyPayload = (MetadataPayload) Payload.deserialize(legacyJson);
+        Assert.assertEquals(0, BinaryCodec.negotiate(legacyPayload.getWireVersion()));
+
+        final MetadataPayload metadataPayload = new MetadataPayload("abc", Constants.VERSION, BinaryCodec.VERSION + 1);
+        final byte[] json = Payload.encode(metadataPayload, 0);
+        final MetadataPayload deserializedPayload = (MetadataPayload) Payload.decode(json, 0, json.length);
+        Assert.assertEquals(BinaryCodec.VERSION, BinaryCodec.negotiate(deserializedPayload.getWireVersion()));
+
+        final byte[] frame = Payload.encode(new MetadataPayload("abc", Constants.VERSION, BinaryCodec.VERSION,
+                Features.SUPPORTED), BinaryCodec.VERSION);
+        final MetadataPayload decodedPayload = (MetadataPayload) Payload.decode(frame, 0, frame.length);
+        Assert.assertTrue(Features.isEnabled(decodedPayload.getFeatures(), Features.FRAGMENT));
+    }
+
+    @Test
+    public void testRejectsTruncatedFrame() {
+        final byte[] data = Payload.encode(new PingPayload("abc"), BinaryCodec.VERSION);
+        try {
+            Payload.decode(data, 0, data.length - 1);
+            Assert.fail("Truncated frame was accepted.");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNesting() {
+        final EnvelopePayload envelope = new EnvelopePayload(Arrays.<Payload>asList(new PingPayload("a"),
+                new PingPayload("b")));
+        final byte[] sequenced = Payload.encode(new SequencedPayload(7, envelope), BinaryCodec.VERSION);
+        final SequencedPayload decoded = (SequencedPayload) Payload.decode(sequenced, 0, sequenced.length);
+        Assert.assertEquals(2, ((EnvelopePayload) decoded.getPayload()).getPayloads().size());
+
+        assertRejected(new EnvelopePayload(Collections.<Payload>singletonList(envelope)));
+        assertRejected(new SequencedPayload(1, new SequencedPayload(2, new PingPayload("a"))));
+        assertRejected(new EnvelopePayload(Collections.<Payload>singletonList(new SequencedPayload(1, envelope))));
+    }
+
+    private static void assertRejected(final Payload payload) {
+        final byte[] data = Payload.encode(payload, BinaryCodec.VERSION);
+        try {
+            Payload.decode(data, 0, data.length);
+            Assert.fail("Nested frame was accepted.");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
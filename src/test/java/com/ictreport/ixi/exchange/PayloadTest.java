@@ -0,0 +1,118 @@
+package com.ictreport.ixi.exchange;
+
+import com.google.gson.JsonParseException;
+import org.junit.Assert;
+import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PayloadTest {
+
+    @Test
+    public void testDecodeFromBytes() {
+        final byte[] data = Payload.encode(new PingPayload("abc\u00e9\ud83d\ude00"), 0);
+        final byte[] packet = new byte[data.length + 8];
+        System.arraycopy(data, 0, packet, 4, data.length);
+
+        final Payload deserializedPayload = Payload.decode(packet, 4, data.length);
+
+        if (deserializedPayload instanceof PingPayload) {
+            Assert.assertEquals("abc\u00e9\ud83d\ude00", ((PingPayload) deserializedPayload).getMessage());
+        } else {
+            Assert.fail("Decoding of polymorphism object failed.");
+        }
+    }
+
+    @Test
+    public void testDecodeTypeNotLeading() {
+        final byte[] data = "{\"uuid\":\"abc\",\"type\":\"UuidPayload\"}".getBytes(StandardCharsets.UTF_8);
+        final Payload deserializedPayload = Payload.decode(data, 0, data.length);
+
+        if (deserializedPayload instanceof UuidPayload) {
+            Assert.assertEquals("abc", ((UuidPayload) deserializedPayload).getUuid());
+        } else {
+            Assert.fail("Decoding of polymorphism object failed.");
+        }
+    }
+
+    @Test
+    public void testRejectsUnknownType() {
+        assertRejected("{\"type\":\"UnknownPayload\",\"uuid\":\"abc\"}");
+        assertRejected("{\"type\":\"UuidPayloadX\",\"uuid\":\"abc\"}");
+        assertRejected("[\"UuidPayload\"]");
+        assertRejected("{\"type\":\"UuidPayload\",\"uuid\":\"abc\"} trailing");
+        assertRejected("");
+    }
+
+    @Test
+    public void testRejectsDeepNesting() {
+        final StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            json.append("{\"type\":\"EnvelopePayload\",\"payloads\":[");
+        }
+        for (int i = 0; i < 2000; i++) {
+            json.append("]}");
+        }
+        assertRejected(json.toString());
+        // Brackets within strings don't count
+        final byte[] data = Payload.encode(new PingPayload("[[[[[[[[[[[[[[[[[[[[{{{{{{{{{{{{{{{{{{{{"), 0);
+        Assert.assertTrue(Payload.decode(data, 0, data.length) instanceof PingPayload);
+    }
+
+    @Test
+    public void testIsWellFormed() {
+        Assert.assertTrue(Payload.isWellFormed(ByteBuffer.wrap(Payload.encode(new PingPayload("abc"), 0))));
+        Assert.assertTrue(Payload.isWellFormed(ByteBuffer.wrap(Payload.encode(new PingPayload("abc"), 1))));
+        Assert.assertTrue(Payload.isWellFormed(ByteBuffer.wrap(" {\"type\":\"PingPayload\"}\n".getBytes(StandardCharsets.UTF_8))));
+
+        Assert.assertFalse(Payload.isWellFormed(ByteBuffer.allocate(0)));
+        Assert.assertFalse(Payload.isWellFormed(ByteBuffer.wrap("GET / HTTP/1.1".getBytes(StandardCharsets.UTF_8))));
+        Assert.assertFalse(Payload.isWellFormed(ByteBuffer.wrap("{\"type\":".getBytes(StandardCharsets.UTF_8))));
+
+        final byte[] frame = Payload.encode(new PingPayload("abc"), 1);
+        Assert.assertFalse(Payload.isWellFormed(ByteBuffer.wrap(frame, 0, frame.length - 1)));
+        frame[2] = 99;
+        Assert.assertFalse(Payload.isWellFormed(ByteBuffer.wrap(frame)));
+    }
+
+    private static void assertRejected(final String json) {
+        final byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        try {
+            Payload.decode(data, 0, data.length);
+            Assert.fail("Invalid payload was accepted: " + json);
+        } catch (final JsonParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEncodedLength() {
+        final List<NeighborPayload> neighbors = Arrays.asList(
+                new NeighborPayload(1546300800000L, "abc", 10, 20, 30, 40, 50),
+                new NeighborPayload(null, null, 11, 21, 31, 41, 51));
+        final List<Payload> payloads = Arrays.asList(
+                new MetadataPayload("abc", "0.6", BinaryCodec.VERSION, Features.SUPPORTED),
+                new PingPayload("abc\u00e9\u20ac\ud83d\ude00\ud83d<&>"),
+                new StatusPayload("xyz", "ict \u00fcnicode", "0.5", "0.6", 60000, neighbors, 43, 7),
+                new ReceivedPingPayload("abc", new PingPayload("def")),
+                new SubmittedPingPayload("abc", null),
+                new RequestUuidPayload("abc", 1337, BinaryCodec.VERSION, null),
+                new UuidPayload("abc", BinaryCodec.VERSION, Collections.<String>emptyList()),
+                new StatusDeltaPayload("xyz", 3, null, "0.5", null, 60000, neighbors,
+                        Collections.singletonList("def"), null),
+                new StatusAckPayload(7),
+                new DeliveryAckPayload(8),
+                new SequencedPayload(9, new EnvelopePayload(Arrays.<Payload>asList(
+                        new PingPayload("a"), new StatusAckPayload(1)))));
+
+        for (final Payload payload : payloads) {
+            for (final int wireVersion : new int[] {0, BinaryCodec.VERSION}) {
+                Assert.assertEquals(payload.getClass().getSimpleName(),
+                        Payload.encode(payload, wireVersion).length, Payload.encodedLength(payload, wireVersion));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ictreport.ixi.exchange;
+
+import com.ictreport.ixi.model.Address;
+import com.ictreport.ixi.model.Neighbor;
+import com.ictreport.ixi.model.Stats;
+import com.ictreport.ixi.utils.Constants;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatusEncoderTest {
+
+    @Test
+    public void testJsonStatus() {
+        final StatusPayload statusPayload = decode(0);
+        Assert.assertEquals("xyz", statusPayload.getUuid());
+        Assert.assertEquals("ict \"quoted\" \u00fc (ict-1)", statusPayload.getName());
+        Assert.assertEquals(Constants.VERSION, statusPayload.getReportIxiVersion());
+        Assert.assertEquals(60000, statusPayload.getIctRoundDuration());
+        Assert.assertEquals(43, statusPayload.getSystemLoadAverage());
+        assertNeighbors(statusPayload.getNeighbors());
+    }
+
+    @Test
+    public void testBinaryStatus() {
+        final StatusPayload statusPayload = decode(BinaryCodec.VERSION);
+        Assert.assertEquals("xyz", statusPayload.getUuid());
+        Assert.assertEquals("ict \"quoted\" \u00fc (ict-1)", statusPayload.getName());
+        Assert.assertEquals(60000, statusPayload.getIctRoundDuration());
+        assertNeighbors(statusPayload.getNeighbors());
+    }
+
+    @Test
+    public void testZeroSteadyStateAllocation() {
+        final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+        allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final StatusEncoder statusEncoder = new StatusEncoder(4096);
+        final List<Neighbor> neighbors = neighbors();
+        final long threadId = Thread.currentThread().getId();
+
+        for (int wireVersion = 0; wireVersion <= BinaryCodec.VERSION; wireVersion++) {
+            // Warm up so the measurement isn't polluted by class loading and compilation.
+            for (int i = 0; i < 20000; i++) {
+                encode(statusEncoder, wireVersion, neighbors);
+            }
+
+            final int iterations = 10000;
+            final long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                encode(statusEncoder, wireVersion, neighbors);
+            }
+            final long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+            // Only the measurement itself may allocate, nothing per encoded report.
+            Assert.assertTrue("Status encoding allocated " + allocated + " bytes", allocated < iterations);
+        }
+    }
+
+    private static StatusPayload decode(final int wireVersion) {
+        final ByteBuffer datagram = encode(new StatusEncoder(4096), wireVersion, neighbors());
+        final Payload payload = Payload.decode(datagram);
+        if (!(payload instanceof StatusPayload)) {
+            Assert.fail("Decoding of encoded status failed.");
+        }
+        return (StatusPayload) payload;
+    }
+
+    private static ByteBuffer encode(final StatusEncoder statusEncoder, final int wireVersion,
+                                     final List<Neighbor> neighbors) {
+        return statusEncoder.encode(wireVersion, "xyz", "ict \"quoted\" \u00fc (ict-1)", "0.5",
+                Constants.VERSION, 60000, neighbors, 43);
+    }
+
+    private static void assertNeighbors(final List<NeighborPayload> neighborPayloads) {
+        Assert.assertEquals(2, neighborPayloads.size());
+        Assert.assertEquals(Long.valueOf(1546300800000L), neighborPayloads.get(0).getTimestamp());
+        Assert.assertEquals("abc", neighborPayloads.get(0).getUuid());
+        Assert.assertEquals(20, neighborPayloads.get(0).getNew());
+        Assert.assertEquals(50, neighborPayloads.get(0).getRequested());
+        Assert.assertNull(neighborPayloads.get(1).getTimestamp());
+        Assert.assertEquals("", neighborPayloads.get(1).getUuid());
+        Assert.assertEquals(-1, neighborPayloads.get(1).getAll());
+    }
+
+    private static List<Neighbor> neighbors() {
+        final List<Neighbor> neighbors = new ArrayList<>();
+        final Neighbor neighbor = new Neighbor(new Address("", "10.0.0.1", 1337));
+        neighbor.setUuid("abc");
+        neighbor.getAddressAndStats().setStats(new Stats(1546300800000L, 10, 20, 30, 40, 50));
+        neighbors.add(neighbor);
+        neighbors.add(new Neighbor(new Address("", "10.0.0.2", 1337)));
+        return neighbors;
+    }
+}
@@ -0,0 +1,53 @@
+package com.ictreport.ixi.model;
+
+import com.ictreport.ixi.utils.AddressResolver;
+import org.junit.Assert;
+import org.junit.Test;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NeighborIndexTest {
+
+    @Test
+    public void testFind() {
+        final Neighbor first = new Neighbor(new Address("", "10.0.0.1", 1337, 1338));
+        final Neighbor second = new Neighbor(new Address("", "10.0.0.2", 1337, 1338));
+        final Neighbor sameIp = new Neighbor(new Address("", "10.0.0.2", 1337, 2000));
+        final NeighborIndex index = NeighborIndex.of(Arrays.asList(first, second, sameIp), new AddressResolver(60000));
+
+        Assert.assertSame(first, index.find(new InetSocketAddress("10.0.0.1", 1338)));
+        Assert.assertSame(second, index.find(new InetSocketAddress("10.0.0.2", 1338)));
+        // Strict port matching wins over the ip-only fallback
+        Assert.assertSame(sameIp, index.find(new InetSocketAddress("10.0.0.2", 2000)));
+        // Unknown port falls back to the first neighbor with the same ip
+        Assert.assertSame(first, index.find(new InetSocketAddress("10.0.0.1", 4000)));
+        Assert.assertNull(index.find(new InetSocketAddress("10.0.0.3", 1338)));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertNull(NeighborIndex.EMPTY.find(new InetSocketAddress("10.0.0.1", 1338)));
+        Assert.assertEquals(0, NeighborIndex.of(Arrays.<Neighbor>asList(), new AddressResolver(60000)).size());
+    }
+
+    @Test
+    public void testNeighborsSnapshot() {
+        final Neighbor first = new Neighbor(new Address("", "10.0.0.1", 1337, 1338));
+        final Neighbor second = new Neighbor(new Address("", "10.0.0.2", 1337, 1338));
+        final List<Neighbor> neighbors = new ArrayList<>(Arrays.asList(first, second));
+        final NeighborIndex index = NeighborIndex.of(neighbors, new AddressResolver(60000));
+
+        // Later changes to the source list don't leak into the published snapshot
+        neighbors.clear();
+        Assert.assertEquals(Arrays.asList(first, second), index.getNeighbors());
+        Assert.assertTrue(NeighborIndex.EMPTY.getNeighbors().isEmpty());
+        try {
+            index.getNeighbors().remove(0);
+            Assert.fail("Snapshot must not be modifiable");
+        } catch (final UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ictreport.ixi.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+public class AddressResolverTest {
+
+    @Test
+    public void testCachedUntilRefreshed() throws UnknownHostException {
+        final FakeResolver resolver = new FakeResolver(1000);
+        resolver.address = InetAddress.getByName("10.0.0.1");
+
+        final InetSocketAddress first = resolver.resolve("rcs.example", 14265);
+        Assert.assertEquals(InetAddress.getByName("10.0.0.1"), first.getAddress());
+        Assert.assertSame(first, resolver.resolve("rcs.example", 14265));
+        Assert.assertEquals(1, resolver.lookups);
+
+        // The address changes, lookups keep being served from the cache until the refresh.
+        resolver.address = InetAddress.getByName("10.0.0.2");
+        Assert.assertEquals(InetAddress.getByName("10.0.0.1"), resolver.resolve("rcs.example"));
+        resolver.refresh(System.currentTimeMillis() + 1000);
+        Assert.assertEquals(2, resolver.lookups);
+        Assert.assertEquals(InetAddress.getByName("10.0.0.2"), resolver.resolve("rcs.example", 14265).getAddress());
+    }
+
+    @Test
+    public void testKeepsLastKnownAddress() throws UnknownHostException {
+        final FakeResolver resolver = new FakeResolver(1000);
+        resolver.address = InetAddress.getByName("10.0.0.1");
+        resolver.resolve("rcs.example");
+
+        resolver.address = null;
+        resolver.refresh(System.currentTimeMillis() + 1000);
+        Assert.assertEquals(InetAddress.getByName("10.0.0.1"), resolver.resolve("rcs.example"));
+
+        Assert.assertNull(resolver.resolve("unknown.example"));
+        Assert.assertTrue(resolver.resolve("unknown.example", 1338).isUnresolved());
+    }
+
+    private static class FakeResolver extends AddressResolver {
+        private InetAddress address;
+        private int lookups = 0;
+
+        private FakeResolver(final long ttl) {
+            super(ttl);
+        }
+
+        @Override
+        protected InetAddress lookup(final String host) throws UnknownHostException {
+            lookups++;
+            if (address == null || !host.equals("rcs.example")) {
+                throw new UnknownHostException(host);
+            }
+            return address;
+        }
+    }
+}
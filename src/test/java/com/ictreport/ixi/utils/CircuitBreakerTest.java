@@ -0,0 +1,58 @@
+package com.ictreport.ixi.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensAfterThresholdAndBacksOffExponentially() {
+        final CircuitBreaker breaker = new CircuitBreaker("test", 3, 100, 250, 1000);
+
+        breaker.recordFailure(0);
+        breaker.recordFailure(0);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest(0));
+        breaker.recordFailure(0);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest(99));
+
+        // Trial call fails, the backoff doubles
+        Assert.assertTrue(breaker.allowRequest(100));
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest(100));
+        breaker.recordFailure(100);
+        Assert.assertFalse(breaker.allowRequest(299));
+        Assert.assertTrue(breaker.allowRequest(300));
+
+        // Capped at the maximum backoff
+        breaker.recordFailure(300);
+        Assert.assertFalse(breaker.allowRequest(549));
+        Assert.assertTrue(breaker.allowRequest(550));
+
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(0, breaker.getConsecutiveFailures());
+        Assert.assertEquals(1, breaker.getOpened());
+        Assert.assertEquals(4, breaker.getRejected());
+    }
+
+    @Test
+    public void testHalfOpenTrialTimesOut() {
+        final CircuitBreaker breaker = new CircuitBreaker("test", 1, 100, 1000, 50);
+
+        breaker.recordFailure(0);
+        Assert.assertTrue(breaker.allowRequest(100));
+        // The trial never records a result
+        Assert.assertFalse(breaker.allowRequest(149));
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Timed out trial counts as failed, the backoff doubles from the timeout on
+        Assert.assertFalse(breaker.allowRequest(150));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest(349));
+        Assert.assertTrue(breaker.allowRequest(350));
+        breaker.recordSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
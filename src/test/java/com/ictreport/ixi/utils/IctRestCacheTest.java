@@ -0,0 +1,160 @@
+package com.ictreport.ixi.utils;
+
+import com.ictreport.ixi.model.AddressAndStats;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IctRestCacheTest {
+
+    @Test
+    public void testServesResponsesWithinTheirTtl() {
+        final CountingSource source = new CountingSource();
+        final long[] now = {0};
+        final IctRestCache cache = new IctRestCache(source, 1000, 1000, 100) {
+            @Override
+            protected long now() {
+                return now[0];
+            }
+        };
+
+        Assert.assertNotNull(cache.getInfo(2187, "secret"));
+        Assert.assertNotNull(cache.getNeighbors(2187, "secret"));
+        now[0] = 50;
+        cache.getInfo(2187, "secret");
+        cache.getNeighbors(2187, "secret");
+        Assert.assertEquals(1, source.infoCalls);
+        Assert.assertEquals(1, source.neighborsCalls);
+        Assert.assertTrue(cache.isNeighborsFresh(2187, "secret"));
+
+        // Neighbors expire long before info
+        now[0] = 150;
+        Assert.assertFalse(cache.isNeighborsFresh(2187, "secret"));
+        cache.getInfo(2187, "secret");
+        cache.getNeighbors(2187, "secret");
+        Assert.assertEquals(1, source.infoCalls);
+        Assert.assertEquals(2, source.neighborsCalls);
+
+        // Other credentials are never answered from the cache
+        cache.getInfo(2187, "other");
+        Assert.assertEquals(2, source.infoCalls);
+    }
+
+    @Test
+    public void testDoesNotCacheFailures() {
+        final CountingSource source = new CountingSource();
+        source.failing = true;
+        final IctRestCache cache = new IctRestCache(source, 1000, 1000, 1000);
+
+        Assert.assertNull(cache.getConfig(2187, "secret"));
+        source.failing = false;
+        Assert.assertNotNull(cache.getConfig(2187, "secret"));
+        Assert.assertEquals(2, source.configCalls);
+
+        cache.invalidate();
+        cache.getConfig(2187, "secret");
+        Assert.assertEquals(3, source.configCalls);
+    }
+
+    @Test
+    public void testServesLastGoodResponseWhileFailing() {
+        final CountingSource source = new CountingSource();
+        final long[] now = {0};
+        final IctRestCache cache = new IctRestCache(source, 100, 100, 100) {
+            @Override
+            protected long now() {
+                return now[0];
+            }
+        };
+
+        final JSONObject info = cache.getInfo(2187, "secret");
+        source.failing = true;
+        now[0] = 500;
+        Assert.assertSame(info, cache.getInfo(2187, "secret"));
+        Assert.assertEquals(2, source.infoCalls);
+        Assert.assertNull(cache.getInfo(2187, "other"));
+    }
+
+    @Test
+    public void testFreshnessCheckDoesNotWaitForFetch() throws Exception {
+        final CountDownLatch fetching = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger neighborsCalls = new AtomicInteger();
+        final IctRestCache cache = new IctRestCache(new CountingSource() {
+            @Override
+            public List<AddressAndStats> getNeighbors(final int ictRestPort, final String ictRestPassword) {
+                neighborsCalls.incrementAndGet();
+                fetching.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new ArrayList<>();
+            }
+        }, 1000, 1000, 1000);
+
+        final List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final Thread caller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    cache.getNeighbors(2187, "secret");
+                }
+            });
+            caller.start();
+            callers.add(caller);
+        }
+        Assert.assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+        // Answered while the fetch is blocked
+        final long start = System.nanoTime();
+        Assert.assertFalse(cache.isNeighborsFresh(2187, "secret"));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        // Every caller waits, one in the fetch and the others on it
+        final long deadline = System.currentTimeMillis() + 5000;
+        for (final Thread caller : callers) {
+            while (caller.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+        for (final Thread caller : callers) {
+            caller.join(5000);
+        }
+        Assert.assertTrue(cache.isNeighborsFresh(2187, "secret"));
+        cache.getNeighbors(2187, "secret");
+        Assert.assertEquals(1, neighborsCalls.get());
+    }
+
+    private static class CountingSource implements IctRestCache.Source {
+        private boolean failing = false;
+        private int infoCalls = 0;
+        private int configCalls = 0;
+        private int neighborsCalls = 0;
+
+        @Override
+        public JSONObject getInfo(final int ictRestPort, final String ictRestPassword) {
+            infoCalls++;
+            return failing ? null : new JSONObject().put("version", "0.5");
+        }
+
+        @Override
+        public JSONObject getConfig(final int ictRestPort, final String ictRestPassword) {
+            configCalls++;
+            return failing ? null : new JSONObject().put("round_duration", 60000);
+        }
+
+        @Override
+        public List<AddressAndStats> getNeighbors(final int ictRestPort, final String ictRestPassword) {
+            neighborsCalls++;
+            return failing ? null : new ArrayList<AddressAndStats>();
+        }
+    }
+}
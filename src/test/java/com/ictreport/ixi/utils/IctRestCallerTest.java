@@ -0,0 +1,66 @@
+package com.ictreport.ixi.utils;
+
+import com.ictreport.ixi.model.AddressAndStats;
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class IctRestCallerTest {
+
+    @Test
+    public void testParseNeighborsKeepsLatestStats() throws IOException {
+        final String json = "{\"neighbors\":["
+                + "{\"address\":\"node-a/10.0.0.1:1337\",\"stats\":["
+                + "{\"timestamp\":1546300800000,\"all\":1,\"new\":2,\"ignored\":3,\"invalid\":4,\"requested\":5},"
+                + "{\"timestamp\":1546300860000,\"all\":10,\"new\":20,\"ignored\":30,\"invalid\":40,\"requested\":50,"
+                + "\"extra\":[1,2]}]},"
+                + "{\"name\":\"ignored\",\"address\":\"node-b/10.0.0.2:1337\",\"stats\":[]},"
+                + "{\"address\":\"not an address\",\"stats\":[]}"
+                + "],\"other\":{\"nested\":true}}";
+
+        final List<AddressAndStats> neighbors = IctRestCaller.parseNeighbors(new StringReader(json));
+
+        Assert.assertEquals(2, neighbors.size());
+        Assert.assertEquals("10.0.0.1", neighbors.get(0).getAddress().getIp());
+        Assert.assertEquals(Long.valueOf(1546300860000L), neighbors.get(0).getStats().getTimestamp());
+        Assert.assertEquals(Integer.valueOf(50), neighbors.get(0).getStats().getRequestedTx());
+        Assert.assertNull(neighbors.get(1).getStats().getTimestamp());
+    }
+
+    @Test
+    public void testParseNeighborsSkipsIncompleteLatestStats() throws IOException {
+        final String json = "{\"neighbors\":["
+                + "{\"address\":\"node-a/10.0.0.1:1337\",\"stats\":["
+                + "{\"timestamp\":1546300800000,\"all\":1,\"new\":2,\"ignored\":3,\"invalid\":4,\"requested\":5},"
+                + "{\"timestamp\":1546300860000,\"all\":10,\"new\":20,\"ignored\":30,\"invalid\":40}]},"
+                + "{\"address\":\"node-b/10.0.0.2:1337\",\"stats\":["
+                + "{\"timestamp\":1546300860000,\"all\":7,\"new\":6,\"ignored\":5,\"invalid\":4,\"requested\":3}]}"
+                + "]}";
+
+        final List<AddressAndStats> neighbors = IctRestCaller.parseNeighbors(new StringReader(json));
+
+        Assert.assertEquals(1, neighbors.size());
+        Assert.assertEquals("10.0.0.2", neighbors.get(0).getAddress().getIp());
+        Assert.assertEquals(Integer.valueOf(3), neighbors.get(0).getStats().getRequestedTx());
+    }
+
+    @Test
+    public void testParseNeighborsSkipsOnlyMalformedNeighbor() throws IOException {
+        final String json = "{\"neighbors\":["
+                + "{\"address\":\"node-a/10.0.0.1:1337\",\"stats\":["
+                + "{\"timestamp\":1546300860000,\"all\":null,\"new\":2,\"ignored\":3,\"invalid\":4,\"requested\":5}]},"
+                + "{\"address\":\"node-b/10.0.0.2:1337\",\"stats\":["
+                + "{\"timestamp\":1546300860000,\"all\":\"many\",\"new\":1.5,\"ignored\":3,\"invalid\":4,\"requested\":5}]},"
+                + "{\"address\":\"node-c/10.0.0.3:1337\",\"stats\":["
+                + "{\"timestamp\":1546300860000,\"all\":7,\"new\":6,\"ignored\":5,\"invalid\":4,\"requested\":3}]}"
+                + "]}";
+
+        final List<AddressAndStats> neighbors = IctRestCaller.parseNeighbors(new StringReader(json));
+
+        Assert.assertEquals(1, neighbors.size());
+        Assert.assertEquals("10.0.0.3", neighbors.get(0).getAddress().getIp());
+        Assert.assertEquals(Integer.valueOf(7), neighbors.get(0).getStats().getAllTx());
+    }
+}
@@ -0,0 +1,105 @@
+package com.ictreport.ixi.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RingBufferTest {
+
+    @Test
+    public void testDropNewest() {
+        final List<Integer> dropped = new ArrayList<>();
+        final RingBuffer<Integer> ring = new RingBuffer<>(3, RingBuffer.OverflowPolicy.DROP_NEWEST, collect(dropped));
+        Assert.assertEquals(4, ring.capacity());
+
+        for (int i = 0; i < 5; i++) {
+            ring.publish(i);
+        }
+        Assert.assertEquals(4, ring.size());
+        Assert.assertEquals(4, ring.getMaxDepth());
+        Assert.assertEquals(1, ring.getOverflowed());
+        Assert.assertEquals(Integer.valueOf(4), dropped.get(0));
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), ring.poll());
+        }
+        Assert.assertNull(ring.poll());
+    }
+
+    @Test
+    public void testDropOldest() {
+        final List<Integer> dropped = new ArrayList<>();
+        final RingBuffer<Integer> ring = new RingBuffer<>(2, RingBuffer.OverflowPolicy.DROP_OLDEST, collect(dropped));
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(ring.publish(i));
+        }
+        Assert.assertEquals(2, dropped.size());
+        Assert.assertEquals(Integer.valueOf(2), ring.poll());
+        Assert.assertEquals(Integer.valueOf(3), ring.poll());
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 20000;
+        // Producers retry rejected elements, so everything published must be consumed exactly once.
+        final RingBuffer<Long> ring = new RingBuffer<>(64, RingBuffer.OverflowPolicy.DROP_NEWEST,
+                collect(Collections.synchronizedList(new ArrayList<Long>())));
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong count = new AtomicLong();
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long i = 1; i <= perProducer; i++) {
+                        while (!ring.publish(i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < 2; c++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (count.get() < producers * perProducer) {
+                            final Long element = ring.poll();
+                            if (element != null) {
+                                sum.addAndGet(element);
+                                count.incrementAndGet();
+                            }
+                        }
+                    } catch (final RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join(30000);
+        }
+
+        Assert.assertEquals(producers * perProducer, count.get());
+        Assert.assertEquals(producers * (long) perProducer * (perProducer + 1) / 2, sum.get());
+    }
+
+    private static <E> RingBuffer.DropHandler<E> collect(final List<E> dropped) {
+        return new RingBuffer.DropHandler<E>() {
+            @Override
+            public void dropped(final E element) {
+                dropped.add(element);
+            }
+        };
+    }
+}
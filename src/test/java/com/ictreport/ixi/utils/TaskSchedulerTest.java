@@ -0,0 +1,67 @@
+package com.ictreport.ixi.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TaskSchedulerTest {
+
+    @Test
+    public void testRunsTasksPeriodicallyAfterTheirOffset() throws InterruptedException {
+        final TaskScheduler scheduler = new TaskScheduler("Test scheduler", 1);
+        final CountDownLatch fastRuns = new CountDownLatch(3);
+        final AtomicInteger lateRuns = new AtomicInteger();
+        scheduler.schedule("fast", new Runnable() {
+            @Override
+            public void run() {
+                fastRuns.countDown();
+            }
+        }, 0, 10, 0);
+        scheduler.schedule("late", new Runnable() {
+            @Override
+            public void run() {
+                lateRuns.incrementAndGet();
+            }
+        }, TimeUnit.MINUTES.toMillis(1), 10, 0);
+
+        scheduler.start();
+        try {
+            Assert.assertTrue(fastRuns.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, lateRuns.get());
+            Assert.assertTrue(scheduler.getTask("fast").getRuns() >= 2);
+            Assert.assertEquals(2, scheduler.getTasks().size());
+        } finally {
+            scheduler.shutDown();
+        }
+    }
+
+    @Test
+    public void testFailingTaskKeepsRunningAndCancelStopsIt() throws InterruptedException {
+        final TaskScheduler scheduler = new TaskScheduler("Test scheduler", 1);
+        final CountDownLatch runs = new CountDownLatch(2);
+        final TaskScheduler.Task task = scheduler.schedule("failing", new Runnable() {
+            @Override
+            public void run() {
+                runs.countDown();
+                throw new IllegalStateException("expected");
+            }
+        }, 0, 10, 5);
+
+        scheduler.start();
+        try {
+            Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+            task.cancel();
+            Thread.sleep(50);
+            final long failures = task.getFailures();
+            Assert.assertTrue(failures >= 2);
+            Thread.sleep(100);
+            Assert.assertEquals(failures, task.getFailures());
+            Assert.assertNull(scheduler.getTask("failing"));
+        } finally {
+            scheduler.shutDown();
+        }
+    }
+}